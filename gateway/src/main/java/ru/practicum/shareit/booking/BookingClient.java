@@ -1,16 +1,22 @@
 package ru.practicum.shareit.booking;
 
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
 import ru.practicum.shareit.booking.dto.BookingNewDto;
 import ru.practicum.shareit.booking.dto.State;
 import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.ServerCallGuard;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -18,32 +24,59 @@ public class BookingClient extends BaseClient {
     private static final String API_PREFIX = "/bookings";
 
     @Autowired
-    public BookingClient(@Value("${shareit.server.url}") String serverUrl, RestTemplateBuilder restTemplate) {
+    public BookingClient(@Value("${shareit.server.url}") String serverUrl, RestTemplateBuilder restTemplate,
+                         ClientHttpRequestFactory requestFactory,
+                         ServerCallGuard guard) {
         super(restTemplate
                 .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX))
-                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory())
-                .build());
+                .requestFactory(() -> requestFactory)
+                .build(), guard, "bookings");
     }
 
-    public ResponseEntity<Object> addBooking(long userId, BookingNewDto createBookingDto) {
-        return post("", userId, createBookingDto);
+    public void addBooking(long userId, BookingNewDto createBookingDto,
+                           HttpServletResponse response) throws IOException {
+        post("", userId, createBookingDto, response);
     }
 
-    public ResponseEntity<Object> patchBooking(long userId, long bookingId, boolean approved) {
-        return patch("/" + bookingId + "?approved=" + approved, userId);
+    public void patchBooking(long userId, long bookingId, boolean approved,
+                             HttpServletResponse response) throws IOException {
+        patch("/" + bookingId + "?approved=" + approved, userId, response);
     }
 
-    public ResponseEntity<Object> getBookingsByBooker(long bookerId, State state, int from, int size) {
-        Map<String, Object> parameters = Map.of("state", state, "from", from, "size", size);
-        return get("?state={state}&from={from}&size={size}", bookerId, parameters);
+    public void decideBookings(long userId, List<BookingDecisionDto> decisions,
+                               HttpServletResponse response) throws IOException {
+        patch("/batch", userId, decisions, response);
     }
 
-    public ResponseEntity<Object> getBookingsByOwner(long userId, State state, int from, int size) {
-        Map<String, Object> parameters = Map.of("state", state, "from", from, "size", size);
-        return get("?state={state}&from={from}&size={size}", userId, parameters);
+    public void getBookingsByBooker(long bookerId, State state, String cursor, int size,
+                                    HttpServletResponse response) throws IOException {
+        getPage("", bookerId, state, cursor, size, response);
     }
 
-    public ResponseEntity<Object> getBookingByBookerOrOwnerItem(long userId, long bookingId) {
-        return get("/" + bookingId, userId);
+    public void getBookingsByOwner(long userId, State state, String cursor, int size,
+                                   HttpServletResponse response) throws IOException {
+        getPage("/owner", userId, state, cursor, size, response);
+    }
+
+    public void exportBookingsByOwner(long userId, HttpServletResponse response) throws IOException {
+        stream("/owner/export", userId, MediaType.APPLICATION_NDJSON, response);
+    }
+
+    public void getBookingByBookerOrOwnerItem(long userId, long bookingId,
+                                              HttpServletResponse response) throws IOException {
+        get("/" + bookingId, userId, response);
+    }
+
+    private void getPage(String path, long userId, State state, String cursor, int size,
+                         HttpServletResponse response) throws IOException {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("state", state);
+        parameters.put("size", size);
+        if (cursor == null) {
+            get(path + "?state={state}&size={size}", userId, parameters, response);
+            return;
+        }
+        parameters.put("cursor", cursor);
+        get(path + "?state={state}&size={size}&cursor={cursor}", userId, parameters, response);
     }
 }
\ No newline at end of file
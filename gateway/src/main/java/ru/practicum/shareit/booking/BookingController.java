@@ -1,17 +1,23 @@
 package ru.practicum.shareit.booking;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.ValidationException;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Positive;
-import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
 import ru.practicum.shareit.booking.dto.BookingNewDto;
 import ru.practicum.shareit.booking.dto.State;
 
+import java.io.IOException;
+import java.util.List;
+
 @Controller
 @RequestMapping(path = "/bookings")
 @RequiredArgsConstructor
@@ -21,46 +27,65 @@ public class BookingController {
     private static final String HEADER_USER_ID = "X-Sharer-User-Id";
 
     @PostMapping
-    public ResponseEntity<Object> addBooking(@RequestHeader(name = HEADER_USER_ID) Long userId,
-                                             @RequestBody @Valid BookingNewDto createBookingDto) {
+    public void addBooking(@RequestHeader(name = HEADER_USER_ID) Long userId,
+                           @RequestBody @Valid BookingNewDto createBookingDto,
+                           HttpServletResponse response) throws IOException {
         if (createBookingDto.getStart().equals(createBookingDto.getEnd())) {
             throw new ValidationException("Начало бронирования не может быть равно его окончанию");
         }
-        return bookingClient.addBooking(userId, createBookingDto);
+        bookingClient.addBooking(userId, createBookingDto, response);
     }
 
     @PatchMapping("/{bookingId}")
-    public ResponseEntity<Object> patchBooking(@RequestHeader(name = HEADER_USER_ID) Long userId,
-                                               @PathVariable Long bookingId,
-                                               @RequestParam boolean approved) {
-        return bookingClient.patchBooking(userId, bookingId, approved);
+    public void patchBooking(@RequestHeader(name = HEADER_USER_ID) Long userId,
+                             @PathVariable Long bookingId,
+                             @RequestParam boolean approved,
+                             HttpServletResponse response) throws IOException {
+        bookingClient.patchBooking(userId, bookingId, approved, response);
+    }
+
+    @PatchMapping("/batch")
+    public void decideBookings(@RequestHeader(name = HEADER_USER_ID) Long userId,
+                               @RequestBody @NotEmpty @Size(max = 500)
+                               List<@Valid BookingDecisionDto> decisions,
+                               HttpServletResponse response) throws IOException {
+        bookingClient.decideBookings(userId, decisions, response);
     }
 
     @GetMapping
-    public ResponseEntity<Object> getBookingsByBooker(@RequestHeader(name = HEADER_USER_ID) Long bookerId,
-                                                      @RequestParam(name = "state", defaultValue = "ALL") String stateParam,
-                                                      @PositiveOrZero @RequestParam(name = "from", defaultValue = "0") int from,
-                                                      @Positive @RequestParam(name = "size", defaultValue = "10") int size) {
+    public void getBookingsByBooker(@RequestHeader(name = HEADER_USER_ID) Long bookerId,
+                                    @RequestParam(name = "state", defaultValue = "ALL") String stateParam,
+                                    @RequestParam(name = "cursor", required = false) String cursor,
+                                    @Positive @Max(100) @RequestParam(name = "size", defaultValue = "10") int size,
+                                    HttpServletResponse response) throws IOException {
 
         State state = State.fromString(stateParam)
                 .orElseThrow(() -> new IllegalArgumentException("Unknown state: " + stateParam));
-        return bookingClient.getBookingsByBooker(bookerId, state, from, size);
+        bookingClient.getBookingsByBooker(bookerId, state, cursor, size, response);
     }
 
     @GetMapping("/owner")
-    public ResponseEntity<Object> getBookingsByOwner(@RequestHeader(name = HEADER_USER_ID) Long userId,
-                                                     @RequestParam(name = "state", defaultValue = "ALL") String stateParam,
-                                                     @PositiveOrZero @RequestParam(name = "from", defaultValue = "0") int from,
-                                                     @Positive @RequestParam(name = "size", defaultValue = "10") int size) {
+    public void getBookingsByOwner(@RequestHeader(name = HEADER_USER_ID) Long userId,
+                                   @RequestParam(name = "state", defaultValue = "ALL") String stateParam,
+                                   @RequestParam(name = "cursor", required = false) String cursor,
+                                   @Positive @Max(100) @RequestParam(name = "size", defaultValue = "10") int size,
+                                   HttpServletResponse response) throws IOException {
 
         State state = State.fromString(stateParam)
                 .orElseThrow(() -> new IllegalArgumentException("Unknown state: " + stateParam));
-        return bookingClient.getBookingsByOwner(userId, state, from, size);
+        bookingClient.getBookingsByOwner(userId, state, cursor, size, response);
+    }
+
+    @GetMapping("/owner/export")
+    public void exportBookingsByOwner(@RequestHeader(name = HEADER_USER_ID) Long userId,
+                                      HttpServletResponse response) throws IOException {
+        bookingClient.exportBookingsByOwner(userId, response);
     }
 
     @GetMapping("/{bookingId}")
-    public ResponseEntity<Object> getBookingByBookerOrOwnerItem(@RequestHeader(name = HEADER_USER_ID) Long userId,
-                                                                @PathVariable Long bookingId) {
-        return bookingClient.getBookingByBookerOrOwnerItem(userId, bookingId);
+    public void getBookingByBookerOrOwnerItem(@RequestHeader(name = HEADER_USER_ID) Long userId,
+                                              @PathVariable Long bookingId,
+                                              HttpServletResponse response) throws IOException {
+        bookingClient.getBookingByBookerOrOwnerItem(userId, bookingId, response);
     }
 }
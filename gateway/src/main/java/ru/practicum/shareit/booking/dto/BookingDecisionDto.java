@@ -0,0 +1,18 @@
+package ru.practicum.shareit.booking.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingDecisionDto {
+
+    @NotNull
+    private Long bookingId;
+
+    @NotNull
+    private Boolean approved;
+}
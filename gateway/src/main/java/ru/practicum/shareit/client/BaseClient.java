@@ -1,97 +1,244 @@
 package ru.practicum.shareit.client;
 
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.*;
 import org.springframework.lang.Nullable;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
+/**
+ * Передаёт запросы гейтвея серверу, а ответ сервера — статус, сквозные заголовки и тело — копирует в ответ
+ * гейтвея без разбора JSON. Разомкнутый выключатель и переполненный bulkhead выбрасываются как
+ * {@link CallNotPermittedException} и {@link BulkheadFullException}, в 503 их превращает
+ * {@link ru.practicum.shareit.exception.ErrorHandler}.
+ */
 public class BaseClient {
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of("connection", "keep-alive", "proxy-connection",
+            "transfer-encoding", "te", "trailer", "upgrade", "content-length", "date");
+
     protected final RestTemplate rest;
+    private final ServerCallGuard guard;
+    private final String name;
+    private final boolean coalesceGets;
+    private final Map<String, CompletableFuture<ResponseEntity<byte[]>>> inFlightGets = new ConcurrentHashMap<>();
+
+    public BaseClient(RestTemplate rest, ServerCallGuard guard, String name) {
+        this(rest, guard, name, false);
+    }
 
-    public BaseClient(RestTemplate rest) {
+    /**
+     * @param name         имя клиента, под ним выделяется отдельный bulkhead
+     * @param coalesceGets одновременные одинаковые GET-запросы (путь, параметры, пользователь)
+     *                     выполняются одним запросом к серверу и получают один и тот же ответ
+     */
+    public BaseClient(RestTemplate rest, ServerCallGuard guard, String name, boolean coalesceGets) {
         this.rest = rest;
+        this.guard = guard;
+        this.name = name;
+        this.coalesceGets = coalesceGets;
     }
 
-    protected ResponseEntity<Object> get(String path) {
-        return get(path, null, null);
+    protected void get(String path,
+    HttpServletResponse response) throws IOException {
+        get(path, null, null, response);
     }
 
-    protected ResponseEntity<Object> get(String path, Long userId) {
-        return get(path, userId, null);
+    protected void get(String path, Long userId,
+    HttpServletResponse response) throws IOException {
+        get(path, userId, null, response);
+    }
+
+    protected void get(String path, Long userId, @Nullable Map<String, Object> parameters,
+                       HttpServletResponse response) throws IOException {
+        if (!coalesceGets) {
+            passThrough(HttpMethod.GET, path, new HttpEntity<>(defaultHeaders(userId)), parameters, response);
+            return;
+        }
+        String key = HttpMethod.GET.name() + " " + path + "|" + userId + "|"
+                + (parameters == null ? "" : new TreeMap<>(parameters));
+        CompletableFuture<ResponseEntity<byte[]>> flight = new CompletableFuture<>();
+        CompletableFuture<ResponseEntity<byte[]>> leader = inFlightGets.putIfAbsent(key, flight);
+        if (leader != null) {
+            try {
+                write(leader.join(), response);
+                return;
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+        ResponseEntity<byte[]> shared;
+        try {
+            shared = buffered(path, new HttpEntity<>(defaultHeaders(userId)), parameters);
+            flight.complete(shared);
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightGets.remove(key, flight);
+        }
+        write(shared, response);
     }
 
-    protected ResponseEntity<Object> get(String path, Long userId, @Nullable Map<String, Object> parameters) {
-        return makeAndSendRequest(HttpMethod.GET, path, userId, parameters, null);
+    /**
+     * Возвращает ошибку ведущего запроса для повторного выброса в ожидавших его потоках.
+     * Error выбрасывается сразу, проверяемое исключение оборачивается.
+     */
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return cause == null ? e : new UndeclaredThrowableException(cause);
     }
 
-    protected <T> ResponseEntity<Object> post(String path, T body) {
-        return post(path, null, null, body);
+    protected <T> void post(String path, T body,
+    HttpServletResponse response) throws IOException {
+        post(path, null, null, body, response);
     }
 
-    protected <T> ResponseEntity<Object> post(String path, Long userId, T body) {
-        return post(path, userId, null, body);
+    protected <T> void post(String path, Long userId, T body,
+    HttpServletResponse response) throws IOException {
+        post(path, userId, null, body, response);
     }
 
-    protected <T> ResponseEntity<Object> post(String path, Long userId, @Nullable Map<String, Object> parameters, T body) {
-        return makeAndSendRequest(HttpMethod.POST, path, userId, parameters, body);
+    protected <T> void post(String path, Long userId, @Nullable Map<String, Object> parameters, T body,
+                            HttpServletResponse response) throws IOException {
+        makeAndSendRequest(HttpMethod.POST, path, userId, parameters, body, response);
     }
 
-    protected <T> ResponseEntity<Object> put(String path, Long userId, T body) {
-        return put(path, userId, null, body);
+    protected <T> void put(String path, Long userId, T body,
+    HttpServletResponse response) throws IOException {
+        put(path, userId, null, body, response);
     }
 
-    protected <T> ResponseEntity<Object> put(String path, Long userId, @Nullable Map<String, Object> parameters, T body) {
-        return makeAndSendRequest(HttpMethod.PUT, path, userId, parameters, body);
+    protected <T> void put(String path, Long userId, @Nullable Map<String, Object> parameters, T body,
+                           HttpServletResponse response) throws IOException {
+        makeAndSendRequest(HttpMethod.PUT, path, userId, parameters, body, response);
     }
 
-    protected <T> ResponseEntity<Object> patch(String path, T body) {
-        return patch(path, null, null, body);
+    protected <T> void patch(String path, T body,
+    HttpServletResponse response) throws IOException {
+        patch(path, null, null, body, response);
     }
 
-    protected <T> ResponseEntity<Object> patch(String path, Long userId) {
-        return patch(path, userId, null, null);
+    protected void patch(String path, Long userId,
+    HttpServletResponse response) throws IOException {
+        patch(path, userId, null, null, response);
     }
 
-    protected <T> ResponseEntity<Object> patch(String path, Long userId, T body) {
-        return patch(path, userId, null, body);
+    protected <T> void patch(String path, Long userId, T body,
+    HttpServletResponse response) throws IOException {
+        patch(path, userId, null, body, response);
     }
 
-    protected <T> ResponseEntity<Object> patch(String path, Long userId, @Nullable Map<String, Object> parameters, T body) {
-        return makeAndSendRequest(HttpMethod.PATCH, path, userId, parameters, body);
+    protected <T> void patch(String path, Long userId, @Nullable Map<String, Object> parameters, T body,
+                             HttpServletResponse response) throws IOException {
+        makeAndSendRequest(HttpMethod.PATCH, path, userId, parameters, body, response);
     }
 
-    protected ResponseEntity<Object> delete(String path) {
-        return delete(path, null, null);
+    protected void delete(String path,
+    HttpServletResponse response) throws IOException {
+        delete(path, null, null, response);
     }
 
-    protected ResponseEntity<Object> delete(String path, Long userId) {
-        return delete(path, userId, null);
+    protected void delete(String path, Long userId,
+    HttpServletResponse response) throws IOException {
+        delete(path, userId, null, response);
     }
 
-    protected ResponseEntity<Object> delete(String path, Long userId, @Nullable Map<String, Object> parameters) {
-        return makeAndSendRequest(HttpMethod.DELETE, path, userId, parameters, null);
+    protected void delete(String path, Long userId, @Nullable Map<String, Object> parameters,
+                          HttpServletResponse response) throws IOException {
+        makeAndSendRequest(HttpMethod.DELETE, path, userId, parameters, null, response);
     }
 
-    private <T> ResponseEntity<Object> makeAndSendRequest(HttpMethod method, String path, Long userId, @Nullable Map<String, Object> parameters, @Nullable T body) {
-        HttpEntity<T> requestEntity = new HttpEntity<>(body, defaultHeaders(userId));
+    private <T> void makeAndSendRequest(HttpMethod method, String path, Long userId,
+                                        @Nullable Map<String, Object> parameters, @Nullable T body,
+                                        HttpServletResponse response) throws IOException {
+        passThrough(method, path, new HttpEntity<>(body, defaultHeaders(userId)), parameters, response);
+    }
 
-        ResponseEntity<Object> shareitServerResponse;
+    /**
+     * Передаёт ответ сервера клиенту по мере получения, не накапливая тело в памяти гейтвея.
+     *
+     * @throws CallNotPermittedException если выключатель разомкнут
+     * @throws BulkheadFullException     если у клиента нет свободных слотов
+     */
+    protected void stream(String path, Long userId, MediaType mediaType, HttpServletResponse response)
+            throws IOException {
+        HttpHeaders headers = defaultHeaders(userId);
+        headers.setAccept(List.of(mediaType, MediaType.APPLICATION_JSON));
+        passThrough(HttpMethod.GET, path, new HttpEntity<>(headers), null, response);
+    }
+
+    /**
+     * Копирует статус, сквозные заголовки и тело ответа сервера в ответ гейтвея прямо из соединения с сервером.
+     * Выключатель учитывает вызов до получения заголовков, долгая передача тела в него не попадает.
+     * Ошибки сервера передаются клиенту как есть: статус и тело из {@link HttpStatusCodeException}.
+     */
+    private void passThrough(HttpMethod method, String path, HttpEntity<?> requestEntity,
+                             @Nullable Map<String, Object> parameters, HttpServletResponse response)
+            throws IOException {
+        RequestCallback requestCallback = rest.httpEntityCallback(requestEntity);
         try {
-            if (parameters != null) {
-                shareitServerResponse = rest.exchange(path, method, requestEntity, Object.class, parameters);
-            } else {
-                shareitServerResponse = rest.exchange(path, method, requestEntity, Object.class);
-            }
+            guard.callUntilHeaders(name, headersReceived -> {
+                ResponseExtractor<Void> copyToResponse = serverResponse -> {
+                    HttpStatusCode status = serverResponse.getStatusCode();
+                    headersReceived.run();
+                    copy(status, serverResponse.getHeaders(), serverResponse.getBody(), response);
+                    return null;
+                };
+                return parameters != null
+                        ? rest.execute(path, method, requestCallback, copyToResponse, parameters)
+                        : rest.execute(path, method, requestCallback, copyToResponse);
+            });
+        } catch (HttpStatusCodeException e) {
+            copy(e.getStatusCode(), e.getResponseHeaders(), new ByteArrayInputStream(e.getResponseBodyAsByteArray()),
+                    response);
+        }
+    }
+
+    /**
+     * Читает ответ сервера в память: один ответ отдаётся всем ожидавшим его вызовам.
+     */
+    private ResponseEntity<byte[]> buffered(String path, HttpEntity<?> requestEntity,
+                                            @Nullable Map<String, Object> parameters) {
+        try {
+            return guarded(() -> parameters != null
+                    ? rest.exchange(path, HttpMethod.GET, requestEntity, byte[].class, parameters)
+                    : rest.exchange(path, HttpMethod.GET, requestEntity, byte[].class));
         } catch (HttpStatusCodeException e) {
-            return ResponseEntity.status(e.getStatusCode()).body(e.getResponseBodyAsByteArray());
+            return ResponseEntity.status(e.getStatusCode())
+                    .headers(e.getResponseHeaders())
+                    .body(e.getResponseBodyAsByteArray());
         }
-        return prepareGatewayResponse(shareitServerResponse);
     }
 
-    private HttpHeaders defaultHeaders(Long userId) {
+    protected <R> R guarded(Supplier<R> call) {
+        return guard.call(name, call);
+    }
+
+    protected HttpHeaders defaultHeaders(Long userId) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.setAccept(List.of(MediaType.APPLICATION_JSON));
@@ -101,17 +248,30 @@ public class BaseClient {
         return headers;
     }
 
-    private static ResponseEntity<Object> prepareGatewayResponse(ResponseEntity<Object> response) {
-        if (response.getStatusCode().is2xxSuccessful()) {
-            return response;
-        }
+    private static void write(ResponseEntity<byte[]> shared,
+    HttpServletResponse response) throws IOException {
+        byte[] body = shared.getBody();
+        copy(shared.getStatusCode(), shared.getHeaders(),
+                new ByteArrayInputStream(body == null ? new byte[0] : body), response);
+    }
 
-        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(response.getStatusCode());
+    private static void copy(HttpStatusCode status, @Nullable HttpHeaders headers, InputStream body,
+                             HttpServletResponse response) throws IOException {
+        response.setStatus(status.value());
+        passThroughHeaders(headers).forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        body.transferTo(response.getOutputStream());
+        response.flushBuffer();
+    }
 
-        if (response.hasBody()) {
-            return responseBuilder.body(response.getBody());
+    private static HttpHeaders passThroughHeaders(@Nullable HttpHeaders headers) {
+        HttpHeaders passed = new HttpHeaders();
+        if (headers != null) {
+            headers.forEach((name, values) -> {
+                if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    passed.put(name, values);
+                }
+            });
         }
-
-        return responseBuilder.build();
+        return passed;
     }
 }
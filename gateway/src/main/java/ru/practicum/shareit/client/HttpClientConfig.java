@@ -0,0 +1,78 @@
+package ru.practicum.shareit.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+
+import java.util.List;
+
+/**
+ * Один пул соединений с сервером на все клиенты гейтвея.
+ * Запросы распределяются между экземплярами сервера через {@link ServerLoadBalancer}.
+ */
+@Configuration
+@EnableConfigurationProperties({ServerHttpClientProperties.class, ServerBalancerProperties.class})
+public class HttpClientConfig {
+    private static final String POOL_NAME = "shareit-server";
+
+    @Bean
+    public PoolingHttpClientConnectionManager serverConnectionManager(ServerHttpClientProperties properties,
+                                                                      MeterRegistry meterRegistry) {
+        Timer leaseTimer = Timer.builder("httpcomponents.httpclient.pool.lease")
+                .description("Время ожидания соединения из пула")
+                .tag("httpclient", POOL_NAME)
+                .register(meterRegistry);
+        PoolingHttpClientConnectionManager connectionManager = new InstrumentedConnectionManager(leaseTimer);
+        connectionManager.setMaxTotal(properties.maxTotal());
+        connectionManager.setDefaultMaxPerRoute(properties.maxPerRoute());
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(properties.connectTimeout()))
+                .setSocketTimeout(Timeout.of(properties.responseTimeout()))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(1))
+                .build());
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME).bindTo(meterRegistry);
+        Gauge.builder("httpcomponents.httpclient.pool.utilization", connectionManager,
+                        manager -> (double) manager.getTotalStats().getLeased() / manager.getMaxTotal())
+                .description("Доля занятых соединений пула")
+                .tag("httpclient", POOL_NAME)
+                .register(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean
+    public CloseableHttpClient serverHttpClient(PoolingHttpClientConnectionManager serverConnectionManager,
+                                                ServerHttpClientProperties properties) {
+        return HttpClients.custom()
+                .setConnectionManager(serverConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(properties.leaseTimeout()))
+                        .setResponseTimeout(Timeout.of(properties.responseTimeout()))
+                        .setConnectionKeepAlive(TimeValue.of(properties.keepAlive()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(properties.idleTimeout()))
+                .build();
+    }
+
+    @Bean
+    public ClientHttpRequestFactory serverRequestFactory(CloseableHttpClient serverHttpClient,
+                                                         ServerLoadBalancer serverLoadBalancer) {
+        return new InterceptingClientHttpRequestFactory(new HttpComponentsClientHttpRequestFactory(serverHttpClient),
+                List.of(serverLoadBalancer));
+    }
+}
@@ -0,0 +1,44 @@
+package ru.practicum.shareit.client;
+
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.util.Timeout;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Пул соединений, замеряющий время ожидания свободного соединения.
+ */
+class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+    private final Timer leaseTimer;
+
+    InstrumentedConnectionManager(Timer leaseTimer) {
+        this.leaseTimer = leaseTimer;
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest leaseRequest = super.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                Timer.Sample sample = Timer.start();
+                try {
+                    return leaseRequest.get(timeout);
+                } finally {
+                    sample.stop(leaseTimer);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return leaseRequest.cancel();
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.shareit.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Настройки балансировки между экземплярами сервера.
+ * Если список экземпляров пуст, используется единственный shareit.server.url.
+ * При stickyUsers запросы с заголовком X-Sharer-User-Id идут на один и тот же исправный экземпляр,
+ * пока запросов в работе на нём не больше чем на stickyMaxExcess, чем на самом свободном экземпляре.
+ */
+@ConfigurationProperties("shareit.server.balancer")
+public record ServerBalancerProperties(
+        @DefaultValue List<URI> instances,
+        @DefaultValue("/actuator/health") String healthPath,
+        @DefaultValue("5s") Duration healthCheckInterval,
+        @DefaultValue("1s") Duration healthCheckTimeout,
+        @DefaultValue("2") int unhealthyThreshold,
+        @DefaultValue("2") int healthyThreshold,
+        @DefaultValue("false") boolean stickyUsers,
+        @DefaultValue("8") int stickyMaxExcess) {
+}
@@ -0,0 +1,78 @@
+package ru.practicum.shareit.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Защищает вызовы сервера общим автоматическим выключателем и отдельным bulkhead на каждый клиент,
+ * чтобы зависший сервер или поток запросов одного клиента не занимали весь гейтвей.
+ * Bulkhead клиента рассчитан на половину пула соединений с сервером: один клиент не забирает пул целиком,
+ * а вызов ждёт свободный слот ограниченное время, а не получает отказ сразу.
+ */
+@Component
+public class ServerCallGuard {
+    public static final String CIRCUIT_BREAKER = "shareit-server";
+
+    private final CircuitBreaker circuitBreaker;
+    private final BulkheadRegistry bulkheadRegistry;
+
+    public ServerCallGuard(CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                           MeterRegistry meterRegistry) {
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER);
+        this.bulkheadRegistry = bulkheadRegistry;
+        circuitBreaker.getEventPublisher().onStateTransition(event -> meterRegistry.counter(
+                "gateway.circuitbreaker.transitions",
+                "name", CIRCUIT_BREAKER,
+                "from", event.getStateTransition().getFromState().name(),
+                "to", event.getStateTransition().getToState().name()).increment());
+    }
+
+    /**
+     * @throws io.github.resilience4j.circuitbreaker.CallNotPermittedException если выключатель разомкнут
+     * @throws io.github.resilience4j.bulkhead.BulkheadFullException           если у клиента нет свободных слотов
+     */
+    public <T> T call(String client, Supplier<T> call) {
+        return Bulkhead.decorateSupplier(bulkheadRegistry.bulkhead(client),
+                CircuitBreaker.decorateSupplier(circuitBreaker, call)).get();
+    }
+
+    /**
+     * Как {@link #call}, но выключатель учитывает вызов только до получения статуса и заголовков ответа:
+     * долгое чтение тела не считается медленным вызовом, а обрыв соединения клиентом во время чтения —
+     * ошибкой сервера. Слот bulkhead занят до конца вызова.
+     *
+     * @param call получает отметку, которую вызывает, как только заголовки ответа получены
+     */
+    public <T> T callUntilHeaders(String client, Function<Runnable, T> call) {
+        return Bulkhead.decorateSupplier(bulkheadRegistry.bulkhead(client), () -> {
+            circuitBreaker.acquirePermission();
+            long startedAt = circuitBreaker.getCurrentTimestamp();
+            AtomicBoolean recorded = new AtomicBoolean();
+            Runnable headersReceived = () -> {
+                if (recorded.compareAndSet(false, true)) {
+                    circuitBreaker.onSuccess(circuitBreaker.getCurrentTimestamp() - startedAt,
+                            circuitBreaker.getTimestampUnit());
+                }
+            };
+            try {
+                T result = call.apply(headersReceived);
+                headersReceived.run();
+                return result;
+            } catch (RuntimeException | Error e) {
+                if (recorded.compareAndSet(false, true)) {
+                    circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - startedAt,
+                            circuitBreaker.getTimestampUnit(), e);
+                }
+                throw e;
+            }
+        }).get();
+    }
+}
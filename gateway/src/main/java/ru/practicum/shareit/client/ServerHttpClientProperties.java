@@ -0,0 +1,20 @@
+package ru.practicum.shareit.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки общего пула HTTP-соединений гейтвея с сервером.
+ */
+@ConfigurationProperties("shareit.server.http")
+public record ServerHttpClientProperties(
+        @DefaultValue("10000") int maxTotal,
+        @DefaultValue("10000") int maxPerRoute,
+        @DefaultValue("2s") Duration connectTimeout,
+        @DefaultValue("30s") Duration responseTimeout,
+        @DefaultValue("5s") Duration leaseTimeout,
+        @DefaultValue("30s") Duration idleTimeout,
+        @DefaultValue("1m") Duration keepAlive) {
+}
@@ -0,0 +1,116 @@
+package ru.practicum.shareit.client;
+
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Экземпляр сервера: число запросов в работе и состояние по результатам проверок.
+ */
+class ServerInstance {
+    private final URI uri;
+    private final String basePath;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger successes = new AtomicInteger();
+    private volatile boolean healthy = true;
+
+    ServerInstance(URI uri) {
+        this.uri = uri;
+        this.basePath = basePath(uri);
+    }
+
+    URI uri() {
+        return uri;
+    }
+
+    int outstanding() {
+        return outstanding.get();
+    }
+
+    boolean healthy() {
+        return healthy;
+    }
+
+    void acquire() {
+        outstanding.incrementAndGet();
+    }
+
+    void release() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Переносит запрос, адресованный логическому адресу сервера, на этот экземпляр.
+     * Путь логического адреса заменяется путём экземпляра, так что сервер может стоять под своим context path.
+     */
+    URI resolve(URI requestUri, String logicalBasePath) {
+        String path = requestUri.getRawPath() == null ? "" : requestUri.getRawPath();
+        if (path.startsWith(logicalBasePath)) {
+            path = path.substring(logicalBasePath.length());
+        }
+        return UriComponentsBuilder.fromUri(requestUri)
+                .scheme(uri.getScheme())
+                .host(uri.getHost())
+                .port(uri.getPort())
+                .replacePath(basePath + path)
+                .build(true)
+                .toUri();
+    }
+
+    URI healthUri(String healthPath) {
+        return UriComponentsBuilder.fromUri(uri)
+                .replacePath(basePath + healthPath)
+                .build(true)
+                .toUri();
+    }
+
+    /**
+     * Вес экземпляра для ключа при выборе по наибольшему весу (rendezvous hashing): у каждого ключа свой порядок
+     * экземпляров, и при исключении одного экземпляра переезжают только его ключи.
+     */
+    long weight(String key) {
+        long hash = (key + "@" + uri).hashCode() * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        hash *= 0xD6E8FEB86659FD93L;
+        return hash ^ (hash >>> 32);
+    }
+
+    /**
+     * Путь адреса без завершающей косой черты.
+     */
+    static String basePath(URI uri) {
+        String path = uri.getRawPath();
+        if (path == null) {
+            return "";
+        }
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * @return true, если экземпляр только что вернулся в балансировку
+     */
+    boolean recordSuccess(int healthyThreshold) {
+        failures.set(0);
+        if (!healthy && successes.incrementAndGet() >= healthyThreshold) {
+            successes.set(0);
+            healthy = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true, если экземпляр только что исключён из балансировки
+     */
+    boolean recordFailure(int unhealthyThreshold) {
+        successes.set(0);
+        if (healthy && failures.incrementAndGet() >= unhealthyThreshold) {
+            failures.set(0);
+            healthy = false;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,222 @@
+package ru.practicum.shareit.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Распределяет запросы к серверу между экземплярами по правилу двух случайных вариантов:
+ * из двух исправных экземпляров выбирается тот, у которого меньше запросов в работе.
+ * По умолчанию экземпляры взаимозаменяемы: кэш карточек вещей на другом экземпляре устаревает не дольше
+ * expireAfterWrite кэша, а чтение своих записей с основной базы при репликах действует в пределах экземпляра.
+ * Если это важно, shareit.server.balancer.sticky-users закрепляет запросы пользователя (заголовок X-Sharer-User-Id)
+ * за одним исправным экземпляром. Когда на нём запросов в работе больше, чем sticky-max-excess сверх самого
+ * свободного экземпляра, запрос уходит по правилу двух вариантов, чтобы активный пользователь или неровный хеш
+ * не перегружали один экземпляр.
+ * Индексы поиска вещей, занятости вещей и существования пользователей сервер сверяет с базой сам,
+ * изменения с других экземпляров видны в них с задержкой до интервала сверки.
+ * Экземпляры, не прошедшие несколько проверок health подряд или не принимающие соединения,
+ * исключаются из балансировки и возвращаются после нескольких успешных проверок.
+ * Если исправных не осталось, запросы распределяются между всеми.
+ */
+@Component
+public class ServerLoadBalancer implements ClientHttpRequestInterceptor {
+    static final String USER_ID_HEADER = "X-Sharer-User-Id";
+
+    private final ServerBalancerProperties properties;
+    private final String logicalBasePath;
+    private final List<ServerInstance> instances;
+    private final HttpClient healthClient;
+    private final ScheduledExecutorService healthChecks = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("server-health-check").factory());
+    private volatile List<ServerInstance> healthy;
+
+    public ServerLoadBalancer(@Value("${shareit.server.url}") URI serverUrl, ServerBalancerProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.logicalBasePath = ServerInstance.basePath(serverUrl);
+        this.instances = (properties.instances().isEmpty() ? List.of(serverUrl) : properties.instances()).stream()
+                .map(ServerInstance::new)
+                .toList();
+        this.healthy = instances;
+        this.healthClient = HttpClient.newBuilder()
+                .connectTimeout(properties.healthCheckTimeout())
+                .build();
+        for (ServerInstance instance : instances) {
+            Gauge.builder("gateway.balancer.instance.healthy", instance, server -> server.healthy() ? 1 : 0)
+                    .description("Участвует ли экземпляр сервера в балансировке")
+                    .tag("instance", instance.uri().toString())
+                    .register(meterRegistry);
+            Gauge.builder("gateway.balancer.instance.outstanding", instance, ServerInstance::outstanding)
+                    .description("Число запросов в работе на экземпляре сервера")
+                    .tag("instance", instance.uri().toString())
+                    .register(meterRegistry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startHealthChecks() {
+        long interval = properties.healthCheckInterval().toMillis();
+        healthChecks.scheduleWithFixedDelay(this::checkHealth, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopHealthChecks() {
+        healthChecks.shutdownNow();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        ServerInstance instance = choose(request.getHeaders().getFirst(USER_ID_HEADER));
+        instance.acquire();
+        try {
+            ClientHttpResponse response = execution.execute(new HttpRequestWrapper(request) {
+                @Override
+                public URI getURI() {
+                    return instance.resolve(super.getURI(), logicalBasePath);
+                }
+            }, body);
+            return new ReleasingResponse(response, instance);
+        } catch (IOException e) {
+            instance.release();
+            recordFailure(instance);
+            throw e;
+        } catch (RuntimeException e) {
+            instance.release();
+            throw e;
+        }
+    }
+
+    void checkHealth() {
+        CompletableFuture.allOf(instances.stream()
+                .map(instance -> healthClient.sendAsync(java.net.http.HttpRequest
+                                        .newBuilder(instance.healthUri(properties.healthPath()))
+                                        .timeout(properties.healthCheckTimeout())
+                                        .GET()
+                                        .build(),
+                                HttpResponse.BodyHandlers.discarding())
+                        .handle((response, error) -> {
+                            if (error == null && response.statusCode() == 200) {
+                                recordSuccess(instance);
+                            } else {
+                                recordFailure(instance);
+                            }
+                            return null;
+                        }))
+                .toArray(CompletableFuture[]::new)).join();
+    }
+
+    private ServerInstance choose(@Nullable String userId) {
+        List<ServerInstance> candidates = healthy.isEmpty() ? instances : healthy;
+        int size = candidates.size();
+        if (size == 1) {
+            return candidates.getFirst();
+        }
+        if (properties.stickyUsers() && userId != null) {
+            ServerInstance sticky = candidates.stream()
+                    .max(Comparator.comparingLong(candidate -> candidate.weight(userId)))
+                    .orElseThrow();
+            int leastOutstanding = candidates.stream().mapToInt(ServerInstance::outstanding).min().orElseThrow();
+            if (sticky.outstanding() - leastOutstanding <= properties.stickyMaxExcess()) {
+                return sticky;
+            }
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServerInstance a = candidates.get(first);
+        ServerInstance b = candidates.get(second);
+        return a.outstanding() <= b.outstanding() ? a : b;
+    }
+
+    private void recordSuccess(ServerInstance instance) {
+        if (instance.recordSuccess(properties.healthyThreshold())) {
+            refreshHealthy();
+        }
+    }
+
+    private void recordFailure(ServerInstance instance) {
+        if (instance.recordFailure(properties.unhealthyThreshold())) {
+            refreshHealthy();
+        }
+    }
+
+    private synchronized void refreshHealthy() {
+        healthy = instances.stream().filter(ServerInstance::healthy).toList();
+    }
+
+    /**
+     * Считает запрос завершённым, когда RestTemplate закрывает ответ после чтения тела.
+     */
+    private static final class ReleasingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final ServerInstance instance;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingResponse(ClientHttpResponse response, ServerInstance instance) {
+            this.response = response;
+            this.instance = instance;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    instance.release();
+                }
+            }
+        }
+    }
+}
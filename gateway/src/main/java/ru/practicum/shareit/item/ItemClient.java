@@ -1,49 +1,68 @@
 package ru.practicum.shareit.item;
 
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.ServerCallGuard;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResult;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class ItemClient extends BaseClient {
     private static final String API_PREFIX = "/items";
 
     @Autowired
-    public ItemClient(@Value("${shareit.server.url}") String serverUrl, RestTemplateBuilder restTemplate) {
+    public ItemClient(@Value("${shareit.server.url}") String serverUrl, RestTemplateBuilder restTemplate,
+                      ClientHttpRequestFactory requestFactory,
+                      ServerCallGuard guard,
+                      @Value("${shareit.items.coalesce-gets:true}") boolean coalesceGets) {
         super(restTemplate
                 .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX))
-                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory())
-                .build());
+                .requestFactory(() -> requestFactory)
+                .build(), guard, "items", coalesceGets);
+    }
+
+    public void addItem(Long userId, ItemDto itemDto, HttpServletResponse response) throws IOException {
+        post("", userId, itemDto, response);
     }
 
-    public ResponseEntity<Object> addItem(Long userId, ItemDto itemDto) {
-        return post("", userId, itemDto);
+    public List<ItemImportResult> importItems(Long userId, List<ItemDto> items) {
+        return guarded(() -> rest.exchange("/import", HttpMethod.POST, new HttpEntity<>(items, defaultHeaders(userId)),
+                new ParameterizedTypeReference<List<ItemImportResult>>() {
+                }).getBody());
     }
 
-    public ResponseEntity<Object> getItem(Long userId, Long itemId) {
-        return get("/" + itemId, userId);
+    public void getItem(Long userId, Long itemId, HttpServletResponse response) throws IOException {
+        get("/" + itemId, userId, response);
     }
 
-    public ResponseEntity<Object> getAllItems(Long userId) {
-        return get("", userId);
+    public void getAllItems(Long userId, HttpServletResponse response) throws IOException {
+        get("", userId, response);
     }
 
-    public ResponseEntity<Object> searchItems(String text) {
-        return get("?text=" + text);
+    public void searchItems(String text, HttpServletResponse response) throws IOException {
+        get("/search?text={text}", null, Map.of("text", text), response);
     }
 
-    public ResponseEntity<Object> patchItem(Long userId, Long itemId, ItemDto itemDto) {
-        return patch("/" + itemId, userId, itemDto);
+    public void patchItem(Long userId, Long itemId, ItemDto itemDto, HttpServletResponse response) throws IOException {
+        patch("/" + itemId, userId, itemDto, response);
     }
 
-    public ResponseEntity<Object> addComment(Long userId, Long itemId, CommentDto commentDto) {
-        return post("/" + itemId + "/comment", userId, commentDto);
+    public void addComment(Long userId, Long itemId, CommentDto commentDto,
+                           HttpServletResponse response) throws IOException {
+        post("/" + itemId + "/comment", userId, commentDto, response);
     }
 }
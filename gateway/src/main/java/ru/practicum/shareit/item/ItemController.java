@@ -1,15 +1,19 @@
 package ru.practicum.shareit.item;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @Controller
 @RequestMapping("/items")
 @RequiredArgsConstructor
@@ -17,40 +21,54 @@ import ru.practicum.shareit.item.dto.ItemDto;
 public class ItemController {
     private static final String HEADER_USER_ID = "X-Sharer-User-Id";
     private final ItemClient itemClient;
+    private final ItemImporter itemImporter;
 
     @PostMapping
-    public ResponseEntity<Object> addItem(@RequestHeader(HEADER_USER_ID) Long userId,
-                                          @Valid @RequestBody ItemDto itemDto) {
-        return itemClient.addItem(userId, itemDto);
+    public void addItem(@RequestHeader(HEADER_USER_ID) Long userId,
+                        @Valid @RequestBody ItemDto itemDto,
+                        HttpServletResponse response) throws IOException {
+        itemClient.addItem(userId, itemDto, response);
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importItems(@RequestHeader(HEADER_USER_ID) Long userId,
+                            InputStream body,
+                            HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        itemImporter.importItems(userId, body, response.getOutputStream());
     }
 
     @GetMapping("/{itemId}")
-    public ResponseEntity<Object> getItem(@RequestHeader(HEADER_USER_ID) Long userId,
-                                         @PathVariable Long itemId) {
-        return itemClient.getItem(userId, itemId);
+    public void getItem(@RequestHeader(HEADER_USER_ID) Long userId,
+                        @PathVariable Long itemId,
+                        HttpServletResponse response) throws IOException {
+        itemClient.getItem(userId, itemId, response);
     }
 
     @PatchMapping("/{itemId}")
-    public ResponseEntity<Object> patchItem(@RequestHeader(HEADER_USER_ID) Long userId,
-                                           @PathVariable Long itemId,
-                                           @RequestBody ItemDto itemDto) {
-        return itemClient.patchItem(userId, itemId, itemDto);
+    public void patchItem(@RequestHeader(HEADER_USER_ID) Long userId,
+                          @PathVariable Long itemId,
+                          @RequestBody ItemDto itemDto,
+                          HttpServletResponse response) throws IOException {
+        itemClient.patchItem(userId, itemId, itemDto, response);
     }
 
     @GetMapping
-    public ResponseEntity<Object> getAllItems(@RequestHeader(HEADER_USER_ID) Long userId) {
-        return itemClient.getAllItems(userId);
+    public void getAllItems(@RequestHeader(HEADER_USER_ID) Long userId,
+                            HttpServletResponse response) throws IOException {
+        itemClient.getAllItems(userId, response);
     }
 
     @GetMapping("/search")
-    public ResponseEntity<Object> searchItems(@NotBlank @RequestParam String text) {
-        return itemClient.searchItems(text);
+    public void searchItems(@NotBlank @RequestParam String text, HttpServletResponse response) throws IOException {
+        itemClient.searchItems(text, response);
     }
 
     @PostMapping("/{itemId}/comment")
-    public ResponseEntity<Object> addComment(@RequestHeader(HEADER_USER_ID) Long userId,
-                                             @PathVariable Long itemId,
-                                             @Valid @RequestBody CommentDto commentDto) {
-        return itemClient.addComment(userId, itemId, commentDto);
+    public void addComment(@RequestHeader(HEADER_USER_ID) Long userId,
+                           @PathVariable Long itemId,
+                           @Valid @RequestBody CommentDto commentDto,
+                           HttpServletResponse response) throws IOException {
+        itemClient.addComment(userId, itemId, commentDto, response);
     }
 }
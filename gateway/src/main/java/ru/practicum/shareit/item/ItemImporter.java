@@ -0,0 +1,124 @@
+package ru.practicum.shareit.item;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Построчный импорт вещей из NDJSON. Каждая строка проверяется по ограничениям ItemDto,
+ * корректные вещи отправляются на сервер пачками, отчёт по строкам пишется по мере обработки.
+ * Пачка — не больше chunk-size строк, считая некорректные, поэтому в памяти держится не больше одной пачки.
+ */
+@Component
+public class ItemImporter {
+    private final ItemClient itemClient;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+
+    @Autowired
+    public ItemImporter(ItemClient itemClient, ObjectMapper objectMapper, Validator validator,
+                        @Value("${shareit.items.import.chunk-size:500}") int chunkSize) {
+        this.itemClient = itemClient;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    public void importItems(Long userId, InputStream ndjson, OutputStream report) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        List<Line> lines = new ArrayList<>();
+        int number = 0;
+        String json;
+        while ((json = reader.readLine()) != null) {
+            number++;
+            if (json.isBlank()) {
+                continue;
+            }
+            lines.add(parse(number, json));
+            if (lines.size() >= chunkSize) {
+                send(userId, lines, report);
+                lines.clear();
+            }
+        }
+        send(userId, lines, report);
+    }
+
+    private Line parse(int number, String json) {
+        ItemDto itemDto;
+        try {
+            itemDto = objectMapper.readValue(json, ItemDto.class);
+        } catch (JsonProcessingException e) {
+            return Line.failed(number, "Некорректный JSON: " + e.getOriginalMessage());
+        }
+        if (itemDto == null) {
+            return Line.failed(number, "Пустая строка импорта");
+        }
+        String violations = validator.validate(itemDto).stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+        return violations.isEmpty() ? new Line(number, itemDto, null) : Line.failed(number, violations);
+    }
+
+    private void send(Long userId, List<Line> lines, OutputStream report) throws IOException {
+        List<ItemDto> items = lines.stream()
+                .filter(line -> line.error() == null)
+                .map(Line::item)
+                .toList();
+        List<ItemImportResult> created = List.of();
+        String chunkError = null;
+        if (!items.isEmpty()) {
+            try {
+                created = Objects.requireNonNullElse(itemClient.importItems(userId, items), List.of());
+            } catch (RestClientException | CallNotPermittedException | BulkheadFullException e) {
+                chunkError = e.getMessage();
+            }
+        }
+
+        Iterator<ItemImportResult> results = created.iterator();
+        for (Line line : lines) {
+            ItemImportResult result;
+            if (line.error() != null) {
+                result = ItemImportResult.failed(line.number(), line.error());
+            } else if (chunkError != null) {
+                result = ItemImportResult.failed(line.number(), chunkError);
+            } else if (results.hasNext()) {
+                ItemImportResult sent = results.next();
+                result = new ItemImportResult(line.number(), sent.id(), sent.error());
+            } else {
+                result = ItemImportResult.failed(line.number(), "Сервер не вернул результат для строки");
+            }
+            report.write(objectMapper.writeValueAsBytes(result));
+            report.write('\n');
+        }
+        report.flush();
+    }
+
+    private record Line(int number, ItemDto item, String error) {
+
+        static Line failed(int number, String error) {
+            return new Line(number, null, error);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum.shareit.item.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ItemImportResult(Integer line, Long id, String error) {
+
+    public static ItemImportResult failed(int line, String error) {
+        return new ItemImportResult(line, null, error);
+    }
+}
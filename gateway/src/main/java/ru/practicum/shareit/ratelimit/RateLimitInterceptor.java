@@ -0,0 +1,80 @@
+package ru.practicum.shareit.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Ограничивает частоту запросов пользователя (X-Sharer-User-Id, без него — адрес клиента)
+ * к группе эндпоинтов. При исчерпании лимита отвечает 429 с Retry-After.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+    private static final String HEADER_USER_ID = "X-Sharer-User-Id";
+    private static final String TOO_MANY_REQUESTS = "{\"error\":\"Слишком много запросов, повторите позже\"}";
+
+    private final RateLimitProperties properties;
+    private final Cache<String, TokenBucket> buckets;
+    private final Map<String, Counter> rejections;
+
+    public RateLimitInterceptor(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(properties.idleTimeout())
+                .maximumSize(properties.maxBuckets())
+                .build();
+        this.rejections = properties.groups().keySet().stream()
+                .collect(Collectors.toMap(group -> group, group -> Counter.builder("gateway.ratelimit.rejected")
+                        .description("Запросы, отклонённые ограничителем частоты")
+                        .tag("group", group)
+                        .register(meterRegistry)));
+        meterRegistry.gauge("gateway.ratelimit.buckets", buckets, Cache::estimatedSize);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        String group = groupOf(request.getRequestURI());
+        RateLimitProperties.Limit limit = properties.groups().get(group);
+        if (!properties.enabled() || limit == null) {
+            return true;
+        }
+        String userId = request.getHeader(HEADER_USER_ID);
+        String key = group + ":" + (userId != null ? userId : "ip:" + request.getRemoteAddr());
+        long now = System.nanoTime();
+        long waitNanos = buckets.get(key, k -> new TokenBucket(limit.capacity(), limit.refillPerSecond(), now))
+                .tryConsume(now);
+        if (waitNanos == 0) {
+            return true;
+        }
+
+        rejections.get(group).increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                String.valueOf(Math.max(1, (long) Math.ceil(waitNanos / (double) TimeUnit.SECONDS.toNanos(1)))));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(TOO_MANY_REQUESTS);
+        return false;
+    }
+
+    private static String groupOf(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.substring(start) : path.substring(start, end);
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.shareit.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Лимиты запросов на пользователя по группам эндпоинтов (первый сегмент пути: bookings, items, ...).
+ * Группы без настроек не ограничиваются.
+ */
+@ConfigurationProperties("shareit.rate-limit")
+public record RateLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("10m") Duration idleTimeout,
+        @DefaultValue("100000") long maxBuckets,
+        Map<String, Limit> groups) {
+
+    public RateLimitProperties {
+        groups = groups == null ? Map.of() : Map.copyOf(groups);
+    }
+
+    public record Limit(long capacity, double refillPerSecond) {
+    }
+}
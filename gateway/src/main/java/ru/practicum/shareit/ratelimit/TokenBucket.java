@@ -0,0 +1,39 @@
+package ru.practicum.shareit.ratelimit;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Неблокирующее ведро токенов: состояние меняется через compare-and-set.
+ */
+class TokenBucket {
+    private final long capacity;
+    private final double refillPerNano;
+    private final AtomicReference<State> state;
+
+    TokenBucket(long capacity, double refillPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000d;
+        this.state = new AtomicReference<>(new State(capacity, nowNanos));
+    }
+
+    /**
+     * @return 0, если токен выдан, иначе сколько наносекунд ждать появления токена
+     */
+    long tryConsume(long nowNanos) {
+        while (true) {
+            State current = state.get();
+            long timestamp = Math.max(current.timestamp(), nowNanos);
+            double tokens = Math.min(capacity,
+                    current.tokens() + (timestamp - current.timestamp()) * refillPerNano);
+            if (tokens < 1) {
+                return (long) Math.ceil((1 - tokens) / refillPerNano);
+            }
+            if (state.compareAndSet(current, new State(tokens - 1, timestamp))) {
+                return 0;
+            }
+        }
+    }
+
+    private record State(double tokens, long timestamp) {
+    }
+}
@@ -1,40 +1,55 @@
 package ru.practicum.shareit.request;
 
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.ServerCallGuard;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
 @Service
 public class ItemRequestClient extends BaseClient {
     private static final String API_PREFIX = "/requests";
 
     @Autowired
-    public ItemRequestClient(@Value("${shareit.server.url}") String serverUrl, RestTemplateBuilder builder) {
+    public ItemRequestClient(@Value("${shareit.server.url}") String serverUrl, RestTemplateBuilder builder,
+                             ClientHttpRequestFactory requestFactory,
+                             ServerCallGuard guard) {
         super(builder
                 .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX))
-                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory())
-                .build());
+                .requestFactory(() -> requestFactory)
+                .build(), guard, "requests");
     }
 
-    public ResponseEntity<Object> addItemRequest(Long userId, ItemRequestDto itemRequestDto) {
-        return post("", userId, itemRequestDto);
+    public void addItemRequest(Long userId, ItemRequestDto itemRequestDto,
+                               HttpServletResponse response) throws IOException {
+        post("", userId, itemRequestDto, response);
     }
 
-    public ResponseEntity<Object> getAllUserRequests(Long userId) {
-        return get("", userId);
+    public void getAllUserRequests(Long userId, HttpServletResponse response) throws IOException {
+        get("", userId, response);
     }
 
-    public ResponseEntity<Object> getAllRequest(Long userId) {
-        return get("", userId);
+    public void getAllRequests(Long userId, String cursor, int size, HttpServletResponse response) throws IOException {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("size", size);
+        if (cursor == null) {
+            get("/all?size={size}", userId, parameters, response);
+            return;
+        }
+        parameters.put("cursor", cursor);
+        get("/all?size={size}&cursor={cursor}", userId, parameters, response);
     }
 
-    public ResponseEntity<Object> getRequest(Long userId, Long requestId) {
-        return get("/" + requestId, userId);
+    public void getRequest(Long userId, Long requestId, HttpServletResponse response) throws IOException {
+        get("/" + requestId, userId, response);
     }
 }
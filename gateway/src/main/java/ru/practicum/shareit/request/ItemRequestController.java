@@ -1,38 +1,50 @@
 package ru.practicum.shareit.request;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 
+import java.io.IOException;
+
 @Controller
 @RequestMapping("/requests")
 @RequiredArgsConstructor
+@Validated
 public class ItemRequestController {
     private static final String HEADER_USER_ID = "X-Sharer-User-Id";
     private final ItemRequestClient itemRequestClient;
 
     @PostMapping
-    public ResponseEntity<Object> addItemRequest(@RequestHeader(HEADER_USER_ID) Long userId,
-                                                 @RequestBody @Valid ItemRequestDto itemRequestDto) {
-        return itemRequestClient.addItemRequest(userId, itemRequestDto);
+    public void addItemRequest(@RequestHeader(HEADER_USER_ID) Long userId,
+                               @RequestBody @Valid ItemRequestDto itemRequestDto,
+                               HttpServletResponse response) throws IOException {
+        itemRequestClient.addItemRequest(userId, itemRequestDto, response);
     }
 
     @GetMapping
-    public ResponseEntity<Object> getAllUserRequests(@RequestHeader(HEADER_USER_ID) Long userId) {
-        return itemRequestClient.getAllUserRequests(userId);
+    public void getAllUserRequests(@RequestHeader(HEADER_USER_ID) Long userId,
+                                   HttpServletResponse response) throws IOException {
+        itemRequestClient.getAllUserRequests(userId, response);
     }
 
     @GetMapping("/all")
-    public ResponseEntity<Object> getAllRequests(@RequestHeader(HEADER_USER_ID) Long userId) {
-        return itemRequestClient.getAllRequest(userId);
+    public void getAllRequests(@RequestHeader(HEADER_USER_ID) Long userId,
+                               @RequestParam(name = "cursor", required = false) String cursor,
+                               @Positive @Max(100) @RequestParam(name = "size", defaultValue = "10") int size,
+                               HttpServletResponse response) throws IOException {
+        itemRequestClient.getAllRequests(userId, cursor, size, response);
     }
 
     @GetMapping("/{requestId}")
-    public ResponseEntity<Object> getRequest(@RequestHeader(HEADER_USER_ID) Long userId,
-                                             @PathVariable Long requestId) {
-        return itemRequestClient.getRequest(userId, requestId);
+    public void getRequest(@RequestHeader(HEADER_USER_ID) Long userId,
+                           @PathVariable Long requestId,
+                           HttpServletResponse response) throws IOException {
+        itemRequestClient.getRequest(userId, requestId, response);
     }
 }
@@ -1,40 +1,45 @@
 package ru.practicum.shareit.user;
 
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.ServerCallGuard;
 import ru.practicum.shareit.user.dto.UserDto;
 
+import java.io.IOException;
+
 @Service
 public class UserClient extends BaseClient {
     private static final String API_PREFIX = "/users";
 
     @Autowired
-    public UserClient(@Value("${shareit.server.url}") String serverUrl, RestTemplateBuilder builder) {
+    public UserClient(@Value("${shareit.server.url}") String serverUrl, RestTemplateBuilder builder,
+                      ClientHttpRequestFactory requestFactory,
+                      ServerCallGuard guard) {
         super(builder
                 .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX))
-                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory())
-                .build());
+                .requestFactory(() -> requestFactory)
+                .build(), guard, "users");
     }
 
-    public ResponseEntity<Object> getUser(Long userId) {
-        return get("/" + userId);
+    public void getUser(Long userId, HttpServletResponse response) throws IOException {
+        get("/" + userId, response);
     }
 
-    public ResponseEntity<Object> patchUser(UserDto userDto, Long userId) {
-        return patch("/" + userId, userDto);
+    public void patchUser(UserDto userDto, Long userId, HttpServletResponse response) throws IOException {
+        patch("/" + userId, userDto, response);
     }
 
-    public ResponseEntity<Object> addUser(UserDto userDto) {
-        return post("", userDto);
+    public void addUser(UserDto userDto, HttpServletResponse response) throws IOException {
+        post("", userDto, response);
     }
 
-    public ResponseEntity<Object> deleteUser(Long userId) {
-        return delete("/" + userId);
+    public void deleteUser(Long userId, HttpServletResponse response) throws IOException {
+        delete("/" + userId, response);
     }
 }
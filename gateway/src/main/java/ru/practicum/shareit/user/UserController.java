@@ -1,12 +1,14 @@
 package ru.practicum.shareit.user;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.user.dto.UserDto;
 
+import java.io.IOException;
+
 @Controller
 @RequestMapping(path = "/users")
 @RequiredArgsConstructor
@@ -14,23 +16,24 @@ public class UserController {
     private final UserClient userClient;
 
     @GetMapping("/{userId}")
-    public ResponseEntity<Object> getUser(@PathVariable Long userId) {
-        return userClient.getUser(userId);
+    public void getUser(@PathVariable Long userId, HttpServletResponse response) throws IOException {
+        userClient.getUser(userId, response);
     }
 
     @PatchMapping("/{userId}")
-    public ResponseEntity<Object> patchUser(@PathVariable Long userId,
-                                            @RequestBody UserDto userDto) {
-        return userClient.patchUser(userDto, userId);
+    public void patchUser(@PathVariable Long userId,
+                          @RequestBody UserDto userDto,
+                          HttpServletResponse response) throws IOException {
+        userClient.patchUser(userDto, userId, response);
     }
 
     @PostMapping
-    public ResponseEntity<Object> addUser(@RequestBody @Valid UserDto userDto) {
-        return userClient.addUser(userDto);
+    public void addUser(@RequestBody @Valid UserDto userDto, HttpServletResponse response) throws IOException {
+        userClient.addUser(userDto, response);
     }
 
     @DeleteMapping("/{userId}")
-    public ResponseEntity<Object> deleteUser(@PathVariable Long userId) {
-        return userClient.deleteUser(userId);
+    public void deleteUser(@PathVariable Long userId, HttpServletResponse response) throws IOException {
+        userClient.deleteUser(userId, response);
     }
 }
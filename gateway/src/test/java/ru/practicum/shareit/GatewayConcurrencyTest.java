@@ -0,0 +1,103 @@
+package ru.practicum.shareit;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Гейтвей с настройками пула и bulkhead из application.properties держит одновременно в работе
+ * гораздо больше запросов, чем прежние 200 соединений пула. Заглушка сервера не отвечает,
+ * пока к ней не придут все запросы.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class GatewayConcurrencyTest {
+    private static final int CALLERS = 1000;
+    private static final byte[] BOOKING = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+    private static final CountDownLatch release = new CountDownLatch(1);
+    private static HttpServer server;
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void serverUrl(DynamicPropertyRegistry registry) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), CALLERS);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            if (!exchange.getRequestURI().getPath().endsWith("/actuator/health")) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, BOOKING.length);
+            exchange.getResponseBody().write(BOOKING);
+            exchange.close();
+        });
+        server.start();
+        registry.add("shareit.server.url", () -> "http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void requestsBeyondFormerPoolSizeAreInFlightTogether() throws Exception {
+        List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder().executor(callers).build()) {
+            for (int i = 1; i <= CALLERS; i++) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/bookings/" + i))
+                        .header("X-Sharer-User-Id", String.valueOf(i))
+                        .timeout(Duration.ofSeconds(60))
+                        .build();
+                responses.add(callers.submit(() -> client.send(request, HttpResponse.BodyHandlers.ofString())));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (maxInFlight.get() < CALLERS && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (Future<HttpResponse<String>> response : responses) {
+                assertEquals(200, response.get(60, TimeUnit.SECONDS).statusCode());
+            }
+        }
+        assertEquals(CALLERS, maxInFlight.get(),
+                "Одновременно на сервере было " + maxInFlight.get() + " запросов из " + CALLERS);
+    }
+}
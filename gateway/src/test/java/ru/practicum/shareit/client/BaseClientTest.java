@@ -0,0 +1,134 @@
+package ru.practicum.shareit.client;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.client.ResourceAccessException;
+import ru.practicum.shareit.item.ItemClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BaseClientTest {
+    private static final int CALLERS = 20;
+    private static final byte[] ITEM = "{\"id\":5}".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean failResponses;
+    private HttpServer server;
+    private ExecutorService callers;
+    private ItemClient itemClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/items", exchange -> {
+            hits.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failResponses) {
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, ITEM.length);
+            exchange.getResponseBody().write(ITEM);
+            exchange.close();
+        });
+        server.start();
+        callers = Executors.newFixedThreadPool(CALLERS);
+
+        ServerCallGuard guard = new ServerCallGuard(CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(),
+                new SimpleMeterRegistry());
+        itemClient = new ItemClient("http://localhost:" + server.getAddress().getPort(), new RestTemplateBuilder(),
+                new HttpComponentsClientHttpRequestFactory(HttpClients.custom().disableAutomaticRetries().build()),
+                guard, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        server.stop(0);
+    }
+
+    @Test
+    void parallelIdenticalGetsReachServerOnce() throws Exception {
+        List<Future<MockHttpServletResponse>> responses = callInParallel();
+
+        for (Future<MockHttpServletResponse> response : responses) {
+            assertEquals(200, response.get(10, TimeUnit.SECONDS).getStatus());
+            assertArrayEquals(ITEM, response.get().getContentAsByteArray());
+        }
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void leaderFailureRethrownToWaitingCallers() throws Exception {
+        failResponses = true;
+        List<Future<MockHttpServletResponse>> responses = callInParallel();
+
+        for (Future<MockHttpServletResponse> response : responses) {
+            Throwable error = null;
+            try {
+                response.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                error = e.getCause();
+            }
+            assertInstanceOf(ResourceAccessException.class, error);
+        }
+        assertEquals(1, hits.get());
+    }
+
+    /**
+     * Запускает одинаковые GET и отпускает ответ сервера, когда все вызовы успели дождаться первого запроса.
+     */
+    private List<Future<MockHttpServletResponse>> callInParallel() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(CALLERS);
+        List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            responses.add(callers.submit(() -> {
+                started.countDown();
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                itemClient.getItem(1L, 5L, response);
+                return response;
+            }));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (hits.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(300);
+        release.countDown();
+        return responses;
+    }
+}
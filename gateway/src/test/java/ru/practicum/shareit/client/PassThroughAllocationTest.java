@@ -0,0 +1,119 @@
+package ru.practicum.shareit.client;
+
+import com.sun.management.ThreadMXBean;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.mock.web.DelegatingServletOutputStream;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.practicum.shareit.item.ItemClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Память, выделенная потоком запроса на мегабайт ответа сервера: при накоплении тела в byte[]
+ * (так по-прежнему работают объединённые GET) и при передаче тела из соединения в ответ гейтвея.
+ */
+class PassThroughAllocationTest {
+    private static final int MEGABYTE = 1024 * 1024;
+    private static final int PAYLOAD_MEGABYTES = 8;
+    private static final int WARM_UP = 3;
+    private static final int ROUNDS = 5;
+
+    private final byte[] payload = new byte[PAYLOAD_MEGABYTES * MEGABYTE];
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Arrays.fill(payload, (byte) 'x');
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/items", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, payload.length);
+            exchange.getResponseBody().write(payload);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void streamedResponseAllocatesFarLessThanBuffered() throws IOException {
+        long buffered = allocatedPerMegabyte(client(true));
+        long streamed = allocatedPerMegabyte(client(false));
+
+        assertTrue(buffered >= MEGABYTE, "С накоплением тела выделено " + buffered + " байт на МБ");
+        assertTrue(streamed * 10 < buffered,
+                "Передача потоком: " + streamed + " байт на МБ, с накоплением: " + buffered);
+    }
+
+    private long allocatedPerMegabyte(ItemClient client) throws IOException {
+        for (int i = 0; i < WARM_UP; i++) {
+            getItem(client);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ROUNDS; i++) {
+            getItem(client);
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / ((long) ROUNDS * PAYLOAD_MEGABYTES);
+    }
+
+    private void getItem(ItemClient client) throws IOException {
+        CountingResponse response = new CountingResponse();
+        client.getItem(1L, 5L, response);
+        assertEquals(200, response.getStatus());
+        assertEquals(payload.length, response.written);
+    }
+
+    private ItemClient client(boolean coalesceGets) {
+        ServerCallGuard guard = new ServerCallGuard(CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(),
+                new SimpleMeterRegistry());
+        return new ItemClient("http://localhost:" + server.getAddress().getPort(), new RestTemplateBuilder(),
+                new HttpComponentsClientHttpRequestFactory(HttpClients.custom().disableAutomaticRetries().build()),
+                guard, coalesceGets);
+    }
+
+    /**
+     * Ответ гейтвея, который считает записанные байты и не хранит их.
+     */
+    private static class CountingResponse extends MockHttpServletResponse {
+        private long written;
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new DelegatingServletOutputStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    written++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    written += len;
+                }
+            });
+        }
+    }
+}
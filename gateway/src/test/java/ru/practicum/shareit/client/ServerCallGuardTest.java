@@ -0,0 +1,230 @@
+package ru.practicum.shareit.client;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.mock.web.DelegatingServletOutputStream;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import ru.practicum.shareit.booking.BookingClient;
+import ru.practicum.shareit.exception.ErrorHandler;
+import ru.practicum.shareit.item.ItemClient;
+import ru.practicum.shareit.item.ItemController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Выключатель вызовов сервера на заглушке в том же процессе: размыкается на ошибках и медленных ответах,
+ * пока разомкнут — отвечает 503 без обращения к серверу. Долгая выгрузка и обрыв соединения клиентом
+ * во время неё выключатель не размыкают.
+ */
+class ServerCallGuardTest {
+    private static final int WINDOW = 10;
+    private static final Duration SLOW_CALL = Duration.ofMillis(200);
+    private static final byte[] ITEM = "{\"id\":5}".getBytes(StandardCharsets.UTF_8);
+    private static final int EXPORT_LINES = 2;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private volatile int responseStatus = 200;
+    private volatile long delayMillis;
+    private HttpServer server;
+    private CircuitBreaker circuitBreaker;
+    private ItemClient itemClient;
+    private MockMvc mockMvc;
+    private BookingClient bookingClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/items", exchange -> {
+            hits.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(responseStatus, ITEM.length);
+            exchange.getResponseBody().write(ITEM);
+            exchange.close();
+        });
+        server.createContext("/bookings/owner/export", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", MediaType.APPLICATION_NDJSON_VALUE);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                for (int i = 0; i < EXPORT_LINES; i++) {
+                    body.write(ITEM);
+                    body.write('\n');
+                    body.flush();
+                    Thread.sleep(SLOW_CALL.toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // клиент закрыл соединение
+            }
+            exchange.close();
+        });
+        server.start();
+
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(WINDOW)
+                .minimumNumberOfCalls(WINDOW)
+                .failureRateThreshold(50)
+                .slowCallDurationThreshold(SLOW_CALL)
+                .slowCallRateThreshold(80)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .ignoreExceptions(HttpClientErrorException.class)
+                .build());
+        ServerCallGuard guard = new ServerCallGuard(circuitBreakerRegistry, BulkheadRegistry.ofDefaults(),
+                meterRegistry);
+        circuitBreaker = circuitBreakerRegistry.circuitBreaker(ServerCallGuard.CIRCUIT_BREAKER);
+        itemClient = new ItemClient("http://localhost:" + server.getAddress().getPort(), new RestTemplateBuilder(),
+                new HttpComponentsClientHttpRequestFactory(HttpClients.custom().disableAutomaticRetries().build()),
+                guard, false);
+        mockMvc = MockMvcBuilders.standaloneSetup(new ItemController(itemClient, null))
+                .setControllerAdvice(new ErrorHandler())
+                .build();
+        bookingClient = new BookingClient("http://localhost:" + server.getAddress().getPort(),
+                new RestTemplateBuilder(),
+                new HttpComponentsClientHttpRequestFactory(HttpClients.custom().disableAutomaticRetries().build()),
+                guard);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void serverErrorsOpenBreaker() throws Exception {
+        responseStatus = 500;
+        for (int i = 0; i < WINDOW; i++) {
+            assertEquals(500, getItem());
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertRejectedWithoutServer();
+        assertEquals(1.0, transitions("CLOSED", "OPEN"));
+    }
+
+    @Test
+    void slowCallsOpenBreaker() throws Exception {
+        delayMillis = SLOW_CALL.toMillis() * 2;
+        for (int i = 0; i < WINDOW; i++) {
+            assertEquals(200, getItem());
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        long startedAt = System.nanoTime();
+        assertRejectedWithoutServer();
+        assertTrue(Duration.ofNanos(System.nanoTime() - startedAt).compareTo(SLOW_CALL) < 0,
+                "Отказ при разомкнутом выключателе ждал сервер");
+        assertEquals(1.0, transitions("CLOSED", "OPEN"));
+    }
+
+    @Test
+    void clientErrorsKeepBreakerClosed() throws Exception {
+        responseStatus = 404;
+        for (int i = 0; i < WINDOW * 2; i++) {
+            assertEquals(404, getItem());
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(WINDOW * 2, hits.get());
+        assertEquals(0.0, transitions("CLOSED", "OPEN"));
+    }
+
+    @Test
+    void longExportsAreNotSlowCalls() throws IOException {
+        for (int i = 0; i < WINDOW; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            bookingClient.exportBookingsByOwner(1L, response);
+            assertEquals(EXPORT_LINES, response.getContentAsString().lines().count());
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(WINDOW, circuitBreaker.getMetrics().getNumberOfSuccessfulCalls());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfSlowCalls());
+    }
+
+    @Test
+    void clientDisconnectDuringExportIsNotServerFailure() {
+        for (int i = 0; i < WINDOW; i++) {
+            assertThrows(ResourceAccessException.class,
+                    () -> bookingClient.exportBookingsByOwner(1L, new DisconnectedResponse()));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+    }
+
+    private void assertRejectedWithoutServer() throws Exception {
+        int hitsBefore = hits.get();
+
+        mockMvc.perform(get("/items/5").header("X-Sharer-User-Id", 1L))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").value(ErrorHandler.SERVER_UNAVAILABLE));
+        assertEquals(hitsBefore, hits.get());
+    }
+
+    private int getItem() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        itemClient.getItem(1L, 5L, response);
+        return response.getStatus();
+    }
+
+    private double transitions(String from, String to) {
+        Counter counter = meterRegistry.find("gateway.circuitbreaker.transitions")
+                .tags("name", ServerCallGuard.CIRCUIT_BREAKER, "from", from, "to", to)
+                .counter();
+        return counter == null ? 0.0 : counter.count();
+    }
+
+    /**
+     * Ответ клиенту, который закрыл соединение: запись тела завершается ошибкой ввода-вывода.
+     */
+    private static class DisconnectedResponse extends MockHttpServletResponse {
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new DelegatingServletOutputStream(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw new IOException("Клиент закрыл соединение");
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package ru.practicum.shareit.client;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Балансировка между экземплярами сервера, поднятыми заглушками в том же процессе.
+ * Третий экземпляр стоит под context path /api, запросы пользователей закреплены за экземплярами.
+ */
+class ServerLoadBalancerTest {
+    private static final String SERVER_URL = "http://localhost:9090";
+    private static final int USERS = 60;
+    private static final int STICKY_MAX_EXCESS = 2;
+    private static final int CALLERS = 30;
+
+    private final List<Stub> stubs = new ArrayList<>();
+    private ServerLoadBalancer balancer;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stubs.add(new Stub(""));
+        stubs.add(new Stub(""));
+        stubs.add(new Stub("/api"));
+        ServerBalancerProperties properties = new ServerBalancerProperties(
+                stubs.stream().map(Stub::uri).toList(), "/actuator/health", Duration.ofSeconds(5),
+                Duration.ofSeconds(1), 2, 2, true, STICKY_MAX_EXCESS);
+        balancer = new ServerLoadBalancer(URI.create(SERVER_URL), properties, new SimpleMeterRegistry());
+        restTemplate = new RestTemplate(new InterceptingClientHttpRequestFactory(
+                new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                        .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                                .setMaxConnTotal(CALLERS * stubs.size())
+                                .setMaxConnPerRoute(CALLERS)
+                                .build())
+                        .disableAutomaticRetries()
+                        .build()),
+                List.of(balancer)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        balancer.stopHealthChecks();
+        stubs.forEach(Stub::stop);
+    }
+
+    @Test
+    void userRequestsStickToOneInstanceAndUsersSpreadAcrossAll() {
+        for (long userId = 1; userId <= USERS; userId++) {
+            int instance = routeOf(userId);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(instance, routeOf(userId));
+            }
+        }
+
+        for (Stub stub : stubs) {
+            assertTrue(!stub.paths.isEmpty(), "Экземпляр не получил пользователей: " + stub.uri());
+        }
+    }
+
+    @Test
+    void contextPathOfInstanceKeptInRequestAndHealthCheck() {
+        Stub withContextPath = stubs.get(2);
+        long userId = userOn(2);
+
+        routeOf(userId);
+        balancer.checkHealth();
+
+        assertTrue(withContextPath.paths.contains("/api/users/" + userId + "?from=0"),
+                "Путь запроса: " + withContextPath.paths);
+        assertTrue(withContextPath.paths.contains("/api/actuator/health"),
+                "Путь проверки: " + withContextPath.paths);
+        assertTrue(stubs.get(0).paths.stream().noneMatch(path -> path.startsWith("/api")));
+    }
+
+    @Test
+    void unhealthyInstanceEjectedAndReadmitted() {
+        long userId = userOn(0);
+        stubs.get(0).healthy = false;
+
+        balancer.checkHealth();
+        assertEquals(0, routeOf(userId));
+
+        balancer.checkHealth();
+        for (long otherUser = 1; otherUser <= USERS; otherUser++) {
+            assertNotEquals(0, routeOf(otherUser));
+        }
+
+        stubs.get(0).healthy = true;
+        balancer.checkHealth();
+        assertNotEquals(0, routeOf(userId));
+
+        balancer.checkHealth();
+        assertEquals(0, routeOf(userId));
+    }
+
+    @Test
+    void userTrafficMovesOffBusyStickyInstance() throws Exception {
+        long userId = userOn(0);
+        stubs.get(0).delayMillis = 500;
+
+        List<Future<Integer>> routes = new ArrayList<>();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                routes.add(callers.submit(() -> routeOf(userId)));
+            }
+        }
+
+        long onSticky = 0;
+        for (Future<Integer> route : routes) {
+            if (route.get() == 0) {
+                onSticky++;
+            }
+        }
+        assertTrue(onSticky < CALLERS / 2, "На занятом экземпляре осталось " + onSticky + " из " + CALLERS);
+        assertTrue(onSticky > 0);
+    }
+
+    private long userOn(int instance) {
+        for (long userId = 1; userId <= USERS; userId++) {
+            if (routeOf(userId) == instance) {
+                return userId;
+            }
+        }
+        throw new AssertionError("Нет пользователя на экземпляре " + instance);
+    }
+
+    /**
+     * Отправляет запрос пользователя и возвращает номер экземпляра, который его обработал.
+     */
+    private int routeOf(long userId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(ServerLoadBalancer.USER_ID_HEADER, String.valueOf(userId));
+        String body = restTemplate.exchange(SERVER_URL + "/users/" + userId + "?from=0", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class).getBody();
+        return Integer.parseInt(body);
+    }
+
+    private final class Stub {
+        private final HttpServer server;
+        private final String contextPath;
+        private final int index = stubs.size();
+        private final Queue<String> paths = new ConcurrentLinkedQueue<>();
+        private volatile boolean healthy = true;
+        private volatile long delayMillis;
+
+        private Stub(String contextPath) throws IOException {
+            this.contextPath = contextPath;
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext(contextPath + "/", exchange -> {
+                String path = exchange.getRequestURI().toString();
+                paths.add(path);
+                if (delayMillis > 0 && !path.endsWith("/actuator/health")) {
+                    try {
+                        Thread.sleep(delayMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                int status = !path.endsWith("/actuator/health") || healthy ? 200 : 503;
+                byte[] response = String.valueOf(index).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            });
+            server.start();
+        }
+
+        private URI uri() {
+            return URI.create("http://localhost:" + server.getAddress().getPort() + contextPath);
+        }
+
+        private void stop() {
+            server.stop(0);
+        }
+    }
+}
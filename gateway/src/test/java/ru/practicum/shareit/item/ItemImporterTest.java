@@ -0,0 +1,91 @@
+package ru.practicum.shareit.item;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.dto.ItemImportResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemImporterTest {
+    private static final String VALID = "{\"name\":\"Дрель\",\"description\":\"ударная\",\"available\":true}";
+    private static final String INVALID = "{\"name\":\"\",\"description\":\"ударная\",\"available\":true}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+    private final ItemClient itemClient = mock(ItemClient.class);
+    private final ItemImporter importer = new ItemImporter(itemClient, objectMapper, validatorFactory.getValidator(), 2);
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void invalidLinesAreReportedWithoutWaitingForValidOnes() throws IOException {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        List<Integer> reportedBeforeSend = new ArrayList<>();
+        when(itemClient.importItems(eq(1L), anyList())).thenAnswer(invocation -> {
+            reportedBeforeSend.add(report.toString(StandardCharsets.UTF_8).split("\n").length);
+            return List.of(new ItemImportResult(null, 10L, null));
+        });
+
+        importer.importItems(1L, ndjson(INVALID, INVALID, INVALID, INVALID, VALID), report);
+
+        verify(itemClient, times(1)).importItems(eq(1L), anyList());
+        assertEquals(List.of(4), reportedBeforeSend);
+        List<ItemImportResult> results = results(report);
+        assertEquals(5, results.size());
+        assertEquals(10L, results.get(4).id());
+    }
+
+    @Test
+    void missingServerResultsAreReportedAsErrors() throws IOException {
+        when(itemClient.importItems(eq(1L), anyList())).thenReturn(List.of(new ItemImportResult(null, 10L, null)));
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+        importer.importItems(1L, ndjson(VALID, VALID), report);
+
+        List<ItemImportResult> results = results(report);
+        assertEquals(new ItemImportResult(1, 10L, null), results.get(0));
+        assertEquals(ItemImportResult.failed(2, "Сервер не вернул результат для строки"), results.get(1));
+    }
+
+    @Test
+    void onlyInvalidLinesNeverCallServer() throws IOException {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+        importer.importItems(1L, ndjson(INVALID, "not json", INVALID), report);
+
+        verify(itemClient, never()).importItems(eq(1L), anyList());
+        assertEquals(3, results(report).size());
+    }
+
+    private static ByteArrayInputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<ItemImportResult> results(ByteArrayOutputStream report) throws IOException {
+        List<ItemImportResult> results = new ArrayList<>();
+        for (String line : report.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readValue(line, ItemImportResult.class));
+        }
+        return results;
+    }
+}
@@ -1,12 +1,20 @@
 package ru.practicum.shareit.booking.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Window;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.booking.BookingState;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingNewDto;
 import ru.practicum.shareit.booking.service.BookingService;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -15,6 +23,7 @@ import java.util.List;
 public class BookingController {
 
     private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     private final BookingService bookingService;
 
     @PostMapping
@@ -30,6 +39,12 @@ public class BookingController {
         return bookingService.updateBooking(ownerId, bookingId, approved);
     }
 
+    @PatchMapping("/batch")
+    public List<BookingDecisionResultDto> decideBookings(@RequestHeader(USER_ID_HEADER) Long ownerId,
+                                                         @RequestBody List<BookingDecisionDto> decisions) {
+        return bookingService.decideBookings(ownerId, decisions);
+    }
+
     @GetMapping("/{bookingId}")
     public BookingDto getBooking(@RequestHeader(USER_ID_HEADER) Long userId,
                                  @PathVariable Long bookingId) {
@@ -37,15 +52,71 @@ public class BookingController {
     }
 
     @GetMapping
-    public List<BookingDto> findBookingsByState(@RequestHeader(USER_ID_HEADER) Long bookerId,
-                                               @RequestParam(required = false, defaultValue = "ALL") BookingState state) {
-        return bookingService.findBookingsByState(bookerId, state);
+    public ResponseEntity<List<BookingDto>> findBookingsByState(@RequestHeader(USER_ID_HEADER) Long bookerId,
+                                                                @RequestParam(required = false, defaultValue = "ALL") BookingState state,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false, defaultValue = "10") int size) {
+        return toPageResponse(bookingService.findBookingsByState(bookerId, state, cursor, size));
     }
 
     @GetMapping("/owner")
-    public List<BookingDto> findBookingsByOwnerId(@RequestHeader(USER_ID_HEADER) Long ownerId,
-                                                  @RequestParam(required = false, defaultValue = "ALL") BookingState state) {
-        return bookingService.findBookingsByOwnerId(ownerId, state);
+    public ResponseEntity<List<BookingDto>> findBookingsByOwnerId(@RequestHeader(USER_ID_HEADER) Long ownerId,
+                                                                  @RequestParam(required = false, defaultValue = "ALL") BookingState state,
+                                                                  @RequestParam(required = false) String cursor,
+                                                                  @RequestParam(required = false, defaultValue = "10") int size) {
+        return toPageResponse(bookingService.findBookingsByOwnerId(ownerId, state, cursor, size));
+    }
+
+    @GetMapping("/owner/export")
+    public void exportBookingsByOwnerId(@RequestHeader(USER_ID_HEADER) Long ownerId,
+                                        HttpServletResponse response) throws IOException {
+        bookingService.exportBookingsByOwnerId(ownerId, new NdjsonOutputStream(response));
+    }
+
+    private static ResponseEntity<List<BookingDto>> toPageResponse(Window<BookingDto> bookings) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (bookings.hasNext() && !bookings.isEmpty()) {
+            response.header(NEXT_CURSOR_HEADER, BookingService.CURSOR.encode(bookings.positionAt(bookings.size() - 1)));
+        }
+        return response.body(bookings.getContent());
+    }
+
+    /**
+     * Тип ответа выставляется при первой записи, чтобы ошибка до начала выгрузки вернулась обычным JSON.
+     */
+    private static class NdjsonOutputStream extends FilterOutputStream {
+        private final HttpServletResponse response;
+        private boolean started;
+
+        NdjsonOutputStream(HttpServletResponse response) throws IOException {
+            super(response.getOutputStream());
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            start();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            start();
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            start();
+            out.flush();
+        }
+
+        private void start() {
+            if (!started) {
+                response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+                started = true;
+            }
+        }
     }
 
 }
@@ -0,0 +1,4 @@
+package ru.practicum.shareit.booking.dto;
+
+public record BookingDecisionDto(Long bookingId, boolean approved) {
+}
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.booking.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import ru.practicum.shareit.booking.BookingStatus;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BookingDecisionResultDto(Long bookingId, BookingStatus status, String error) {
+
+    public static BookingDecisionResultDto decided(Long bookingId, BookingStatus status) {
+        return new BookingDecisionResultDto(bookingId, status, null);
+    }
+
+    public static BookingDecisionResultDto failed(Long bookingId, String error) {
+        return new BookingDecisionResultDto(bookingId, null, error);
+    }
+}
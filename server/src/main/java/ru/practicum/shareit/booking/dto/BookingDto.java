@@ -4,8 +4,6 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import ru.practicum.shareit.booking.BookingStatus;
-import ru.practicum.shareit.item.model.Item;
-import ru.practicum.shareit.user.model.User;
 
 import java.time.LocalDateTime;
 
@@ -15,10 +13,15 @@ import java.time.LocalDateTime;
 public class BookingDto {
     private Long id;
     private Long itemId;
-    private Item item;
-    private User booker;
+    private BookedItem item;
+    private Booker booker;
     private BookingStatus status;
     private LocalDateTime start;
     private LocalDateTime end;
 
+    public record BookedItem(Long id, String name) {
+    }
+
+    public record Booker(Long id, String name) {
+    }
 }
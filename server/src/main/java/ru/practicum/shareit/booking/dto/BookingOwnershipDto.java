@@ -0,0 +1,9 @@
+package ru.practicum.shareit.booking.dto;
+
+import ru.practicum.shareit.booking.BookingStatus;
+
+import java.time.LocalDateTime;
+
+public record BookingOwnershipDto(Long id, Long itemId, Long ownerId, BookingStatus status,
+                                  LocalDateTime start, LocalDateTime end) {
+}
@@ -0,0 +1,9 @@
+package ru.practicum.shareit.booking.dto;
+
+import ru.practicum.shareit.booking.BookingStatus;
+
+import java.time.LocalDateTime;
+
+public record BookingViewDto(Long id, LocalDateTime start, LocalDateTime end, BookingStatus status,
+                             Long itemId, String itemName, Long ownerId, Long bookerId, String bookerName) {
+}
@@ -3,6 +3,7 @@ package ru.practicum.shareit.booking.mapper;
 import ru.practicum.shareit.booking.BookingStatus;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingNewDto;
+import ru.practicum.shareit.booking.dto.BookingViewDto;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.model.User;
@@ -13,14 +14,26 @@ public class BookingMapper {
         return new BookingDto(
                 booking.getId(),
                 booking.getItem().getId(),
-                booking.getItem(),
-                booking.getBooker(),
+                new BookingDto.BookedItem(booking.getItem().getId(), booking.getItem().getName()),
+                new BookingDto.Booker(booking.getBooker().getId(), booking.getBooker().getName()),
                 booking.getStatus(),
                 booking.getStart(),
                 booking.getEnd()
         );
     }
 
+    public static BookingDto toBookingDto(BookingViewDto booking) {
+        return new BookingDto(
+                booking.id(),
+                booking.itemId(),
+                new BookingDto.BookedItem(booking.itemId(), booking.itemName()),
+                new BookingDto.Booker(booking.bookerId(), booking.bookerName()),
+                booking.status(),
+                booking.start(),
+                booking.end()
+        );
+    }
+
     public static Booking toBooking(BookingNewDto bookingDto, Item item, User booker, BookingStatus status) {
         Booking booking = new Booking();
         booking.setItem(item);
@@ -3,6 +3,7 @@ package ru.practicum.shareit.booking.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
 import ru.practicum.shareit.booking.BookingStatus;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.model.User;
@@ -16,7 +17,8 @@ import java.time.LocalDateTime;
 public class Booking {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookings_seq")
+    @SequenceGenerator(name = "bookings_seq", sequenceName = "bookings_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, name = "start_time")
@@ -38,4 +40,15 @@ public class Booking {
     @Column(nullable = false, name = "status")
     private BookingStatus status;
 
+    @Version
+    private Long version;
+
+    /**
+     * Время последнего изменения, по нему индекс занятости подтягивает чужие подтверждения.
+     * Массовые UPDATE выставляют его сами.
+     */
+    @UpdateTimestamp
+    @Column(nullable = false, name = "updated_at")
+    private LocalDateTime updatedAt;
+
 }
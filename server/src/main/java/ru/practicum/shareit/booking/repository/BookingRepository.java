@@ -1,45 +1,102 @@
 package ru.practicum.shareit.booking.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.dto.BookingIntervalDto;
+import ru.practicum.shareit.booking.dto.BookingOwnershipDto;
+import ru.practicum.shareit.booking.dto.BookingViewDto;
 import ru.practicum.shareit.booking.model.Booking;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
+    String BOOKING_VIEW = "select new ru.practicum.shareit.booking.dto.BookingViewDto(" +
+            "b.id, b.start, b.end, b.status, i.id, i.name, i.owner.id, u.id, u.name) " +
+            "from Booking as b join b.item as i join b.booker as u ";
+    String PAGE_FILTER = "and b.status in (:statuses) " +
+            "and b.start > :startAfter and b.end > :endAfter and b.end < :endBefore " +
+            "and (b.start < :cursorStart or (b.start = :cursorStart and b.id < :cursorId)) " +
+            "order by b.start desc, b.id desc";
+    String EXPORT_FETCH_SIZE = "500";
 
     @Query("select b from Booking as b " +
             "where b.item.id = :itemId and b.status in (:statuses) and :startDate <= b.end and :endDate >= b.start")
     List<Booking> findAllWithIntersectionDates(Long itemId, Set<BookingStatus> statuses, LocalDateTime startDate,
                                                LocalDateTime endDate);
 
-    List<Booking> findAllByItemIdAndBookerIdAndStatus(Long itemId, Long bookerId, BookingStatus status);
+    @Query("select count(b) > 0 from Booking as b " +
+            "where b.item.id = :itemId and b.status = :status and :startDate <= b.end and :endDate >= b.start")
+    boolean existsIntersection(Long itemId, BookingStatus status, LocalDateTime startDate, LocalDateTime endDate);
 
-    List<Booking> findAllByItemIdAndBookerId(Long itemId, Long bookerId);
+    @Query("select new ru.practicum.shareit.booking.dto.BookingIntervalDto(b.id, b.item.id, b.start, b.end) " +
+            "from Booking as b where b.status = :status and b.item.id in (:itemIds) and b.end >= :endFrom")
+    List<BookingIntervalDto> findAllIntervalsByStatusAndItemIdIn(BookingStatus status, Collection<Long> itemIds,
+                                                                 LocalDateTime endFrom);
 
-    List<Booking> findAllByBookerIdOrderByStartDesc(Long bookerId);
+    @Query("select new ru.practicum.shareit.booking.dto.BookingIntervalDto(b.id, b.item.id, b.start, b.end) " +
+            "from Booking as b where b.status = :status")
+    List<BookingIntervalDto> findAllIntervalsByStatus(BookingStatus status);
 
-    List<Booking> findAllByBookerIdAndStatusAndEndIsAfterOrderByStartDesc(Long bookerId, BookingStatus status, LocalDateTime dt);
+    @Query("select new ru.practicum.shareit.booking.dto.BookingIntervalDto(b.id, b.item.id, b.start, b.end) " +
+            "from Booking as b where b.status = :status and b.end >= :endFrom")
+    List<BookingIntervalDto> findAllIntervalsByStatusAndEndFrom(BookingStatus status, LocalDateTime endFrom);
 
-    List<Booking> findAllByBookerIdAndStatusAndEndIsBeforeOrderByStartDesc(Long bookerId, BookingStatus status, LocalDateTime dt);
+    @Query("select new ru.practicum.shareit.booking.dto.BookingIntervalDto(b.id, b.item.id, b.start, b.end) " +
+            "from Booking as b where b.status = :status and b.end >= :endFrom and b.updatedAt >= :updatedFrom")
+    List<BookingIntervalDto> findAllIntervalsByStatusAndEndFromAndUpdatedFrom(BookingStatus status,
+                                                                             LocalDateTime endFrom,
+                                                                             LocalDateTime updatedFrom);
 
-    List<Booking> findAllByBookerIdAndStatusAndStartIsAfterOrderByStartDesc(Long bookerId, BookingStatus status, LocalDateTime dt);
+    @Query("select new ru.practicum.shareit.booking.dto.BookingIntervalDto(b.id, b.item.id, b.start, b.end) " +
+            "from Booking as b where b.status = :status and (b.booker.id = :userId or b.item.owner.id = :userId)")
+    List<BookingIntervalDto> findAllIntervalsByStatusAndBookerIdOrOwnerId(BookingStatus status, Long userId);
 
-    List<Booking> findAllByBookerIdAndStatusOrderByStartDesc(Long bookerId, BookingStatus status);
+    @Query("select new ru.practicum.shareit.booking.dto.BookingOwnershipDto(" +
+            "b.id, i.id, i.owner.id, b.status, b.start, b.end) " +
+            "from Booking as b join b.item as i where b.id in (:bookingIds)")
+    List<BookingOwnershipDto> findAllOwnershipByIdIn(Collection<Long> bookingIds);
 
-    List<Booking> findAllByItemIdOrderByStartAsc(Long itemId);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Booking as b set b.status = :status, b.version = b.version + 1, b.updatedAt = :updatedAt " +
+            "where b.id in (:bookingIds) and b.status = :expected")
+    int updateStatusByIdIn(Collection<Long> bookingIds, BookingStatus expected, BookingStatus status,
+                           LocalDateTime updatedAt);
 
-    // запросные методы для владельца вещи
-    List<Booking> findAllByItemOwnerIdOrderByStartDesc(Long ownerId);
+    List<Booking> findAllByItemIdAndBookerIdAndStatus(Long itemId, Long bookerId, BookingStatus status);
 
-    List<Booking> findAllByItemOwnerIdAndStatusAndEndIsAfterOrderByStartDesc(Long ownerId, BookingStatus status, LocalDateTime dt);
+    List<Booking> findAllByItemIdAndBookerId(Long itemId, Long bookerId);
+
+    @Query(BOOKING_VIEW + "where b.id = :bookingId")
+    Optional<BookingViewDto> findViewById(Long bookingId);
 
-    List<Booking> findAllByItemOwnerIdAndStatusAndEndIsBeforeOrderByStartDesc(Long ownerId, BookingStatus status, LocalDateTime dt);
+    @Query(BOOKING_VIEW + "where u.id = :bookerId " + PAGE_FILTER)
+    List<BookingViewDto> findPageByBookerId(Long bookerId, Set<BookingStatus> statuses, LocalDateTime startAfter,
+                                            LocalDateTime endAfter, LocalDateTime endBefore,
+                                            LocalDateTime cursorStart, Long cursorId, Limit limit);
 
-    List<Booking> findAllByItemOwnerIdAndStatusAndStartIsAfterOrderByStartDesc(Long ownerId, BookingStatus status, LocalDateTime dt);
+    // запросные методы для владельца вещи
+    @Query(BOOKING_VIEW + "where i.owner.id = :ownerId " + PAGE_FILTER)
+    List<BookingViewDto> findPageByOwnerId(Long ownerId, Set<BookingStatus> statuses, LocalDateTime startAfter,
+                                           LocalDateTime endAfter, LocalDateTime endBefore,
+                                           LocalDateTime cursorStart, Long cursorId, Limit limit);
+
+    /**
+     * Поток читается курсором порциями по EXPORT_FETCH_SIZE строк, только внутри транзакции.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query(BOOKING_VIEW + "where i.owner.id = :ownerId order by b.start desc, b.id desc")
+    Stream<BookingViewDto> streamAllByOwnerId(Long ownerId);
 
-    List<Booking> findAllByItemOwnerIdAndStatusOrderByStartDesc(Long ownerId, BookingStatus status);
+    List<Booking> findAllByItemIdOrderByStartAsc(Long itemId);
 }
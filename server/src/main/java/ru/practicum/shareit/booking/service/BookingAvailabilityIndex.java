@@ -0,0 +1,243 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.dto.BookingIntervalDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.LocalChangeTracker;
+import ru.practicum.shareit.common.TransactionCallbacks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс подтверждённых бронирований по вещам для проверки занятости без запроса к базе.
+ * Хранит только незакончившиеся бронирования: новое бронирование не может начаться в прошлом,
+ * поэтому закончившиеся не прогреваются и удаляются при каждой сверке.
+ * Изменения применяются сразу и откатываются вместе с транзакцией.
+ * Подтверждения в обход этого экземпляра подтягиваются раз в shareit.booking.availability.reconcile-interval
+ * по updated_at, с перекрытием shareit.booking.availability.reconcile-overlap на незавершённые транзакции
+ * и расхождение часов экземпляров. Удаления в обход экземпляра видит только полная сверка
+ * раз в shareit.booking.availability.full-reconcile-interval. Подтверждение бронирования всегда сверяется с базой,
+ * поэтому устаревший индекс может пропустить только создание бронирования, которое затем не удастся подтвердить.
+ * При shareit.booking.availability.db-check=true, а также до прогрева, проверка идёт через базу.
+ */
+@Component
+public class BookingAvailabilityIndex {
+    private final BookingRepository bookingRepository;
+    private final boolean databaseCheck;
+    private final Duration reconcileOverlap;
+    private final Map<Long, BookingIntervalTree> trees = new ConcurrentHashMap<>();
+    private final LocalChangeTracker<Long> localChanges = new LocalChangeTracker<>();
+    private final ReadWriteLock reconcileLock = new ReentrantReadWriteLock();
+    private volatile boolean warmedUp;
+    private LocalDateTime changedFrom;
+
+    @Autowired
+    public BookingAvailabilityIndex(BookingRepository bookingRepository,
+                                    @Value("${shareit.booking.availability.db-check:false}") boolean databaseCheck,
+                                    @Value("${shareit.booking.availability.reconcile-overlap:PT1M}")
+                                    Duration reconcileOverlap,
+                                    MeterRegistry meterRegistry) {
+        this.bookingRepository = bookingRepository;
+        this.databaseCheck = databaseCheck;
+        this.reconcileOverlap = reconcileOverlap;
+        Gauge.builder("shareit.booking.availability.intervals", trees,
+                        map -> map.values().stream().mapToInt(BookingIntervalTree::size).sum())
+                .description("Незакончившиеся подтверждённые бронирования в индексе занятости")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void warmUp() {
+        if (databaseCheck) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (BookingIntervalDto interval : bookingRepository.findAllIntervalsByStatusAndEndFrom(BookingStatus.APPROVED,
+                now)) {
+            add(interval);
+        }
+        changedFrom = now.minus(reconcileOverlap);
+        warmedUp = true;
+    }
+
+    /**
+     * Добавляет бронирования, подтверждённые с прошлой сверки, и удаляет закончившиеся.
+     * Если изменённая вещь пропущена из-за локальных изменений, окно изменений не сдвигается,
+     * и её бронирования перечитываются при следующей сверке.
+     */
+    @Scheduled(initialDelayString = "${shareit.booking.availability.reconcile-interval:PT30S}",
+            fixedDelayString = "${shareit.booking.availability.reconcile-interval:PT30S}")
+    public synchronized void reconcile() {
+        if (databaseCheck || !warmedUp) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        localChanges.startScan();
+        List<BookingIntervalDto> changed;
+        try {
+            changed = bookingRepository.findAllIntervalsByStatusAndEndFromAndUpdatedFrom(BookingStatus.APPROVED,
+                    now, changedFrom);
+        } catch (RuntimeException e) {
+            localChanges.finishScan();
+            throw e;
+        }
+        boolean deferred = false;
+        reconcileLock.writeLock().lock();
+        try {
+            Set<Long> skipped = localChanges.finishScan();
+            for (BookingIntervalDto interval : changed) {
+                if (skipped.contains(interval.itemId())) {
+                    deferred = true;
+                } else {
+                    add(interval);
+                }
+            }
+        } finally {
+            reconcileLock.writeLock().unlock();
+        }
+        if (!deferred) {
+            changedFrom = now.minus(reconcileOverlap);
+        }
+        removeEndedBefore(now);
+    }
+
+    /**
+     * Заменяет деревья вещей деревьями из снимка незакончившихся подтверждённых бронирований. Вещи, изменённые
+     * в этом экземпляре во время чтения снимка или в незавершённых транзакциях, не трогаются.
+     */
+    @Scheduled(initialDelayString = "${shareit.booking.availability.full-reconcile-interval:PT10M}",
+            fixedDelayString = "${shareit.booking.availability.full-reconcile-interval:PT10M}")
+    public synchronized void reconcileAll() {
+        if (databaseCheck || !warmedUp) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        localChanges.startScan();
+        List<BookingIntervalDto> intervals;
+        try {
+            intervals = bookingRepository.findAllIntervalsByStatusAndEndFrom(BookingStatus.APPROVED, now);
+        } catch (RuntimeException e) {
+            localChanges.finishScan();
+            throw e;
+        }
+        Map<Long, BookingIntervalTree> snapshot = new HashMap<>();
+        for (BookingIntervalDto interval : intervals) {
+            snapshot.computeIfAbsent(interval.itemId(), id -> new BookingIntervalTree())
+                    .add(interval.id(), interval.start(), interval.end());
+        }
+        reconcileLock.writeLock().lock();
+        try {
+            Set<Long> skipped = localChanges.finishScan();
+            trees.keySet().removeIf(itemId -> !snapshot.containsKey(itemId) && !skipped.contains(itemId));
+            snapshot.forEach((itemId, tree) -> {
+                if (!skipped.contains(itemId)) {
+                    trees.put(itemId, tree);
+                }
+            });
+        } finally {
+            reconcileLock.writeLock().unlock();
+        }
+        removeEndedBefore(now);
+    }
+
+    public boolean isOccupied(Long itemId, LocalDateTime start, LocalDateTime end) {
+        if (databaseCheck || !warmedUp) {
+            return !bookingRepository.findAllWithIntersectionDates(itemId, Set.of(BookingStatus.APPROVED),
+                    start, end).isEmpty();
+        }
+        BookingIntervalTree tree = trees.get(itemId);
+        return tree != null && tree.overlaps(start, end);
+    }
+
+    public void addApproved(Booking booking) {
+        addApproved(new BookingIntervalDto(booking.getId(), booking.getItem().getId(), booking.getStart(),
+                booking.getEnd()));
+    }
+
+    public void addApproved(BookingIntervalDto interval) {
+        reconcileLock.readLock().lock();
+        try {
+            localChanges.changed(interval.itemId());
+            add(interval);
+        } finally {
+            reconcileLock.readLock().unlock();
+        }
+        TransactionCallbacks.afterRollback(() -> remove(interval));
+    }
+
+    public void removeItem(Long itemId) {
+        BookingIntervalTree removed;
+        reconcileLock.readLock().lock();
+        try {
+            localChanges.changed(itemId);
+            removed = trees.remove(itemId);
+        } finally {
+            reconcileLock.readLock().unlock();
+        }
+        if (removed != null) {
+            TransactionCallbacks.afterRollback(() -> trees.putIfAbsent(itemId, removed));
+        }
+    }
+
+    public void removeUser(Long userId) {
+        if (databaseCheck) {
+            return;
+        }
+        List<BookingIntervalDto> intervals = bookingRepository
+                .findAllIntervalsByStatusAndBookerIdOrOwnerId(BookingStatus.APPROVED, userId);
+        reconcileLock.readLock().lock();
+        try {
+            for (BookingIntervalDto interval : intervals) {
+                localChanges.changed(interval.itemId());
+                remove(interval);
+            }
+        } finally {
+            reconcileLock.readLock().unlock();
+        }
+        TransactionCallbacks.afterRollback(() -> intervals.forEach(this::add));
+    }
+
+    /**
+     * Деревья меняются внутри compute, чтобы удаление опустевшего дерева не потеряло параллельное добавление.
+     */
+    private void add(BookingIntervalDto interval) {
+        trees.compute(interval.itemId(), (itemId, tree) -> {
+            BookingIntervalTree target = tree != null ? tree : new BookingIntervalTree();
+            target.add(interval.id(), interval.start(), interval.end());
+            return target;
+        });
+    }
+
+    private void remove(BookingIntervalDto interval) {
+        trees.computeIfPresent(interval.itemId(), (itemId, tree) -> {
+            tree.remove(interval.id());
+            return tree.size() == 0 ? null : tree;
+        });
+    }
+
+    private void removeEndedBefore(LocalDateTime cutoff) {
+        for (Long itemId : trees.keySet()) {
+            trees.computeIfPresent(itemId, (id, tree) -> {
+                tree.removeEndedBefore(cutoff);
+                return tree.size() == 0 ? null : tree;
+            });
+        }
+    }
+}
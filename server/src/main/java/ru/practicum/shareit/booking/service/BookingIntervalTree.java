@@ -0,0 +1,196 @@
+package ru.practicum.shareit.booking.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Дерево интервалов подтверждённых бронирований одной вещи.
+ * Декартово дерево по (start, id), в каждом узле хранится максимальный end поддерева,
+ * поэтому проверка пересечения выполняется за O(log n).
+ */
+class BookingIntervalTree {
+    private final Map<Long, LocalDateTime> startByBookingId = new HashMap<>();
+    private Node root;
+
+    synchronized void add(Long bookingId, LocalDateTime start, LocalDateTime end) {
+        LocalDateTime previousStart = startByBookingId.put(bookingId, start);
+        if (previousStart != null) {
+            root = delete(root, previousStart, bookingId);
+        }
+        root = insert(root, new Node(bookingId, start, end));
+    }
+
+    synchronized void remove(Long bookingId) {
+        LocalDateTime start = startByBookingId.remove(bookingId);
+        if (start != null) {
+            root = delete(root, start, bookingId);
+        }
+    }
+
+    synchronized boolean overlaps(LocalDateTime start, LocalDateTime end) {
+        Node node = root;
+        while (node != null) {
+            if (!start.isAfter(node.end) && !end.isBefore(node.start)) {
+                return true;
+            }
+            if (node.left != null && !node.left.maxEnd.isBefore(start)) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return false;
+    }
+
+    synchronized int size() {
+        return startByBookingId.size();
+    }
+
+    /**
+     * Удаляет бронирования, закончившиеся раньше cutoff. Поддеревья, где все бронирования закончились,
+     * отбрасываются целиком по maxEnd, а начинающиеся не раньше cutoff не обходятся,
+     * поэтому обход затрагивает только уже начавшиеся бронирования.
+     */
+    synchronized void removeEndedBefore(LocalDateTime cutoff) {
+        List<Long> removed = new ArrayList<>();
+        root = prune(root, cutoff, removed);
+        removed.forEach(startByBookingId::remove);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.bookingId, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node delete(Node node, LocalDateTime start, long bookingId) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, bookingId, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, start, bookingId);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, start, bookingId);
+        } else {
+            return merge(node.left, node.right);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node prune(Node node, LocalDateTime cutoff, List<Long> removed) {
+        if (node == null) {
+            return null;
+        }
+        if (node.maxEnd.isBefore(cutoff)) {
+            collect(node, removed);
+            return null;
+        }
+        node.left = prune(node.left, cutoff, removed);
+        if (!node.start.isBefore(cutoff)) {
+            update(node);
+            return node;
+        }
+        node.right = prune(node.right, cutoff, removed);
+        if (node.end.isBefore(cutoff)) {
+            removed.add(node.bookingId);
+            return merge(node.left, node.right);
+        }
+        update(node);
+        return node;
+    }
+
+    private static void collect(Node node, List<Long> bookingIds) {
+        if (node != null) {
+            bookingIds.add(node.bookingId);
+            collect(node.left, bookingIds);
+            collect(node.right, bookingIds);
+        }
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        update(node);
+        left.right = node;
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        update(node);
+        right.left = node;
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        LocalDateTime maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(maxEnd)) {
+            maxEnd = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd.isAfter(maxEnd)) {
+            maxEnd = node.right.maxEnd;
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static int compare(LocalDateTime start, long bookingId, Node node) {
+        int cmp = start.compareTo(node.start);
+        return cmp != 0 ? cmp : Long.compare(bookingId, node.bookingId);
+    }
+
+    private static final class Node {
+        private final long bookingId;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private LocalDateTime maxEnd;
+        private Node left;
+        private Node right;
+
+        private Node(long bookingId, LocalDateTime start, LocalDateTime end) {
+            this.bookingId = bookingId;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+    }
+}
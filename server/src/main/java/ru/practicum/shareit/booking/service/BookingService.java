@@ -1,32 +1,65 @@
 package ru.practicum.shareit.booking.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.BookingState;
 import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingIntervalDto;
 import ru.practicum.shareit.booking.dto.BookingNewDto;
+import ru.practicum.shareit.booking.dto.BookingOwnershipDto;
+import ru.practicum.shareit.booking.dto.BookingViewDto;
 import ru.practicum.shareit.booking.mapper.BookingMapper;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.KeysetCursor;
+import ru.practicum.shareit.common.OptimisticRetry;
 import ru.practicum.shareit.exceptions.NotFoundException;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserExistenceIndex;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "shareit.service", histogram = true)
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class BookingService {
+    public static final KeysetCursor CURSOR = new KeysetCursor("start");
+
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
     private final ItemRepository itemRepository;
+    private final BookingAvailabilityIndex bookingAvailabilityIndex;
+    private final UserExistenceIndex userExistenceIndex;
+    private final ObjectMapper objectMapper;
+    private final OptimisticRetry optimisticRetry;
 
     @Transactional
     public BookingDto createBooking(Long bookerId, BookingNewDto bookingDto) {
@@ -37,10 +70,7 @@ public class BookingService {
             throw new RuntimeException("Предмет уже кем-то забронирован");
         }
 
-        List<Booking> bookings = bookingRepository.findAllWithIntersectionDates(bookingDto.getItemId(),
-                Set.of(BookingStatus.APPROVED), bookingDto.getStart(), bookingDto.getEnd());
-
-        if (!bookings.isEmpty()) {
+        if (bookingAvailabilityIndex.isOccupied(item.getId(), bookingDto.getStart(), bookingDto.getEnd())) {
             throw new NotFoundException("Предмет занят в указанные даты");
         }
 
@@ -49,8 +79,80 @@ public class BookingService {
         return BookingMapper.toBookingDto(bookingRepository.save(booking));
     }
 
-    @Transactional
+    /**
+     * Подтверждения одной вещи выполняются по очереди под блокировкой её строки и проверяют пересечения по базе.
+     * Параллельное решение по тому же бронированию отсекается версией, и запрос повторяется в новой транзакции.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public BookingDto updateBooking(Long ownerId, Long bookingId, boolean approved) {
+        return optimisticRetry.execute(() -> decideBooking(ownerId, bookingId, approved));
+    }
+
+    /**
+     * Применяет решения владельца по нескольким бронированиям. Права и статусы проверяются одним запросом,
+     * подтверждаемые бронирования сверяются с уже подтверждёнными и между собой, статусы меняются массовым UPDATE.
+     * Результаты возвращаются в порядке решений, ошибка по одному бронированию не отменяет остальные.
+     * Как и одиночное подтверждение, блокирует вещи и повторяется при конфликте версий.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<BookingDecisionResultDto> decideBookings(Long ownerId, List<BookingDecisionDto> decisions) {
+        return optimisticRetry.execute(() -> applyDecisions(ownerId, decisions));
+    }
+
+    public BookingDto findBookingByIdAndBookerIdOrOwnerId(Long bookerId, Long bookingId) {
+        return bookingRepository.findViewById(bookingId)
+                .filter(booking -> booking.bookerId().equals(bookerId) || booking.ownerId().equals(bookerId))
+                .map(BookingMapper::toBookingDto)
+                .orElseThrow(() -> new NotFoundException("Бронирование с таким id не найдено"));
+    }
+
+    public Window<BookingDto> findBookingsByState(Long bookerId, BookingState state, String cursor, int size) {
+        userExistenceIndex.requireExists(bookerId);
+        KeysetCursor.checkPageSize(size);
+        KeysetCursor.Position position = CURSOR.decode(cursor);
+        PageFilter filter = PageFilter.of(state, LocalDateTime.now());
+        List<BookingViewDto> bookings = bookingRepository.findPageByBookerId(bookerId, filter.statuses(),
+                filter.startAfter(), filter.endAfter(), filter.endBefore(), position.timestamp(), position.id(),
+                Limit.of(size + 1));
+        return toWindow(bookings, size);
+    }
+
+    public Window<BookingDto> findBookingsByOwnerId(Long ownerId, BookingState state, String cursor, int size) {
+        userExistenceIndex.requireExists(ownerId);
+        KeysetCursor.checkPageSize(size);
+        KeysetCursor.Position position = CURSOR.decode(cursor);
+        PageFilter filter = PageFilter.of(state, LocalDateTime.now());
+        List<BookingViewDto> bookings = bookingRepository.findPageByOwnerId(ownerId, filter.statuses(),
+                filter.startAfter(), filter.endAfter(), filter.endBefore(), position.timestamp(), position.id(),
+                Limit.of(size + 1));
+        return toWindow(bookings, size);
+    }
+
+    /**
+     * Пишет все бронирования вещей владельца в NDJSON по мере чтения из базы, не накапливая их в памяти.
+     */
+    public void exportBookingsByOwnerId(Long ownerId, OutputStream output) throws IOException {
+        userExistenceIndex.requireExists(ownerId);
+        try (Stream<BookingViewDto> bookings = bookingRepository.streamAllByOwnerId(ownerId)) {
+            Iterator<BookingViewDto> iterator = bookings.iterator();
+            while (iterator.hasNext()) {
+                output.write(objectMapper.writeValueAsBytes(BookingMapper.toBookingDto(iterator.next())));
+                output.write('\n');
+            }
+        }
+        output.flush();
+    }
+
+    private static Window<BookingDto> toWindow(List<BookingViewDto> bookings, int size) {
+        List<BookingDto> page = bookings.stream()
+                .limit(size)
+                .map(BookingMapper::toBookingDto)
+                .toList();
+        return Window.from(page, index -> CURSOR.positionOf(page.get(index).getStart(), page.get(index).getId()),
+                bookings.size() > size);
+    }
+
+    private BookingDto decideBooking(Long ownerId, Long bookingId, boolean approved) {
         Booking booking = getBooking(bookingId);
         Item item = getItem(booking.getItem().getId());
 
@@ -63,65 +165,124 @@ public class BookingService {
         }
 
         if (approved) {
+            itemRepository.findAllForApprovalByIdIn(List.of(item.getId()));
+            if (bookingRepository.existsIntersection(item.getId(), BookingStatus.APPROVED, booking.getStart(),
+                    booking.getEnd())) {
+                throw new NotFoundException("Предмет занят в указанные даты");
+            }
             booking.setStatus(BookingStatus.APPROVED);
         } else {
             booking.setStatus(BookingStatus.REJECTED);
         }
 
-        return BookingMapper.toBookingDto(bookingRepository.save(booking));
+        Booking savedBooking = bookingRepository.save(booking);
+        if (approved) {
+            bookingAvailabilityIndex.addApproved(savedBooking);
+        }
+        return BookingMapper.toBookingDto(savedBooking);
     }
 
-    public BookingDto findBookingByIdAndBookerIdOrOwnerId(Long bookerId, Long bookingId) {
-        return bookingRepository.findById(bookingId)
-                .filter(booking -> booking.getBooker().getId().equals(bookerId)
-                        || booking.getItem().getOwner().getId().equals(bookerId))
-                .map(BookingMapper::toBookingDto)
-                .orElseThrow(() -> new NotFoundException("Бронирование с таким id не найдено"));
+    private List<BookingDecisionResultDto> applyDecisions(Long ownerId, List<BookingDecisionDto> decisions) {
+        Map<Long, BookingOwnershipDto> bookings = bookingRepository.findAllOwnershipByIdIn(decisions.stream()
+                        .map(BookingDecisionDto::bookingId)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(BookingOwnershipDto::id, Function.identity()));
+
+        Set<Long> decided = new HashSet<>();
+        Map<Long, BookingIntervalTree> approvedByItem = lockApprovedItems(ownerId, decisions, bookings);
+        List<BookingIntervalDto> approved = new ArrayList<>();
+        List<Long> rejected = new ArrayList<>();
+        List<BookingDecisionResultDto> results = new ArrayList<>();
+        for (BookingDecisionDto decision : decisions) {
+            BookingOwnershipDto booking = bookings.get(decision.bookingId());
+            String error = checkDecision(ownerId, booking, decided);
+            if (error == null && decision.approved() && isOccupied(booking, approvedByItem)) {
+                error = "Предмет занят в указанные даты";
+            }
+            if (error != null) {
+                results.add(BookingDecisionResultDto.failed(decision.bookingId(), error));
+                continue;
+            }
+
+            decided.add(booking.id());
+            if (decision.approved()) {
+                approvedByItem.computeIfAbsent(booking.itemId(), itemId -> new BookingIntervalTree())
+                        .add(booking.id(), booking.start(), booking.end());
+                approved.add(new BookingIntervalDto(booking.id(), booking.itemId(), booking.start(), booking.end()));
+                results.add(BookingDecisionResultDto.decided(booking.id(), BookingStatus.APPROVED));
+            } else {
+                rejected.add(booking.id());
+                results.add(BookingDecisionResultDto.decided(booking.id(), BookingStatus.REJECTED));
+            }
+        }
+
+        updateWaitingStatus(approved.stream().map(BookingIntervalDto::id).toList(), BookingStatus.APPROVED);
+        updateWaitingStatus(rejected, BookingStatus.REJECTED);
+        approved.forEach(bookingAvailabilityIndex::addApproved);
+        return results;
     }
 
-    public List<BookingDto> findBookingsByState(Long bookerId, BookingState state) {
-        User user = getUser(bookerId);
-        List<Booking> bookings = switch (state) {
-            case ALL -> bookingRepository.findAllByBookerIdOrderByStartDesc(user.getId());
-            case CURRENT -> bookingRepository.findAllByBookerIdAndStatusAndEndIsAfterOrderByStartDesc(bookerId,
-                    BookingStatus.APPROVED, LocalDateTime.now());
-            case PAST -> bookingRepository.findAllByBookerIdAndStatusAndEndIsBeforeOrderByStartDesc(bookerId,
-                    BookingStatus.APPROVED, LocalDateTime.now());
-            case FUTURE -> bookingRepository.findAllByBookerIdAndStatusAndStartIsAfterOrderByStartDesc(bookerId,
-                    BookingStatus.APPROVED, LocalDateTime.now());
-            case WAITING -> bookingRepository.findAllByBookerIdAndStatusOrderByStartDesc(bookerId,
-                    BookingStatus.WAITING);
-            case REJECTED -> bookingRepository.findAllByBookerIdAndStatusOrderByStartDesc(bookerId,
-                    BookingStatus.REJECTED);
-        };
-
-        if (bookings.isEmpty()) {
-            return List.of();
-        } else {
-            return bookings.stream().map(BookingMapper::toBookingDto).toList();
-        }
-    }
-
-    public List<BookingDto> findBookingsByOwnerId(Long ownerId, BookingState state) {
-        User user = getUser(ownerId);
-        List<Booking> bookings = switch (state) {
-            case ALL -> bookingRepository.findAllByItemOwnerIdOrderByStartDesc(user.getId());
-            case CURRENT -> bookingRepository.findAllByItemOwnerIdAndStatusAndEndIsAfterOrderByStartDesc(ownerId,
-                    BookingStatus.APPROVED, LocalDateTime.now());
-            case PAST -> bookingRepository.findAllByItemOwnerIdAndStatusAndEndIsBeforeOrderByStartDesc(ownerId,
-                    BookingStatus.APPROVED, LocalDateTime.now());
-            case FUTURE -> bookingRepository.findAllByItemOwnerIdAndStatusAndStartIsAfterOrderByStartDesc(ownerId,
-                    BookingStatus.APPROVED, LocalDateTime.now());
-            case WAITING -> bookingRepository.findAllByItemOwnerIdAndStatusOrderByStartDesc(ownerId,
-                    BookingStatus.WAITING);
-            case REJECTED -> bookingRepository.findAllByItemOwnerIdAndStatusOrderByStartDesc(ownerId,
-                    BookingStatus.REJECTED);
-        };
-
-        if (bookings.isEmpty()) {
-            return List.of();
-        } else {
-            return bookings.stream().map(BookingMapper::toBookingDto).toList();
+    /**
+     * Блокирует вещи, по которым в пакете есть подтверждения, и возвращает их подтверждённые интервалы из базы.
+     * С ними сверяются подтверждения пакета.
+     */
+    private Map<Long, BookingIntervalTree> lockApprovedItems(Long ownerId, List<BookingDecisionDto> decisions,
+                                                             Map<Long, BookingOwnershipDto> bookings) {
+        List<BookingOwnershipDto> candidates = decisions.stream()
+                .filter(BookingDecisionDto::approved)
+                .map(decision -> bookings.get(decision.bookingId()))
+                .filter(booking -> booking != null && booking.ownerId().equals(ownerId))
+                .toList();
+        Map<Long, BookingIntervalTree> approvedByItem = new HashMap<>();
+        if (candidates.isEmpty()) {
+            return approvedByItem;
+        }
+
+        List<Long> itemIds = candidates.stream().map(BookingOwnershipDto::itemId).distinct().toList();
+        LocalDateTime endFrom = candidates.stream()
+                .map(BookingOwnershipDto::start)
+                .min(LocalDateTime::compareTo)
+                .orElseThrow();
+        itemRepository.findAllForApprovalByIdIn(itemIds);
+        for (BookingIntervalDto interval : bookingRepository.findAllIntervalsByStatusAndItemIdIn(
+                BookingStatus.APPROVED, itemIds, endFrom)) {
+            approvedByItem.computeIfAbsent(interval.itemId(), itemId -> new BookingIntervalTree())
+                    .add(interval.id(), interval.start(), interval.end());
+        }
+        return approvedByItem;
+    }
+
+    private static String checkDecision(Long ownerId, BookingOwnershipDto booking, Set<Long> decided) {
+        if (booking == null) {
+            return "Бронирование с таким id не найдено";
+        }
+        if (!booking.ownerId().equals(ownerId)) {
+            return "Пользователь не является владельцем предмета";
+        }
+        if (booking.status() != BookingStatus.WAITING) {
+            return "Бронирование уже подтверждено";
+        }
+        if (decided.contains(booking.id())) {
+            return "Решение по бронированию уже есть в этом запросе";
+        }
+        return null;
+    }
+
+    private static boolean isOccupied(BookingOwnershipDto booking, Map<Long, BookingIntervalTree> approvedByItem) {
+        BookingIntervalTree approved = approvedByItem.get(booking.itemId());
+        return approved != null && approved.overlaps(booking.start(), booking.end());
+    }
+
+    private void updateWaitingStatus(List<Long> bookingIds, BookingStatus status) {
+        if (bookingIds.isEmpty()) {
+            return;
+        }
+        if (bookingRepository.updateStatusByIdIn(bookingIds, BookingStatus.WAITING, status, LocalDateTime.now())
+                != bookingIds.size()) {
+            throw new OptimisticLockingFailureException("Бронирования изменились во время обработки");
         }
     }
 
@@ -139,4 +300,22 @@ public class BookingService {
         return bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new NotFoundException("Бронирование с таким id не найдено"));
     }
+
+    private record PageFilter(Set<BookingStatus> statuses, LocalDateTime startAfter, LocalDateTime endAfter,
+                              LocalDateTime endBefore) {
+        private static final LocalDateTime MIN_DATE = LocalDateTime.of(1, 1, 1, 0, 0);
+        private static final LocalDateTime MAX_DATE = LocalDateTime.of(9999, 12, 31, 23, 59);
+        private static final Set<BookingStatus> APPROVED = Set.of(BookingStatus.APPROVED);
+
+        static PageFilter of(BookingState state, LocalDateTime now) {
+            return switch (state) {
+                case ALL -> new PageFilter(EnumSet.allOf(BookingStatus.class), MIN_DATE, MIN_DATE, MAX_DATE);
+                case CURRENT -> new PageFilter(APPROVED, MIN_DATE, now, MAX_DATE);
+                case PAST -> new PageFilter(APPROVED, MIN_DATE, MIN_DATE, now);
+                case FUTURE -> new PageFilter(APPROVED, now, MIN_DATE, MAX_DATE);
+                case WAITING -> new PageFilter(Set.of(BookingStatus.WAITING), MIN_DATE, MIN_DATE, MAX_DATE);
+                case REJECTED -> new PageFilter(Set.of(BookingStatus.REJECTED), MIN_DATE, MIN_DATE, MAX_DATE);
+            };
+        }
+    }
 }
@@ -0,0 +1,98 @@
+package ru.practicum.shareit.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.practicum.shareit.exceptions.ErrorHandler;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * На виртуальных потоках Tomcat больше не ограничивает число одновременных запросов, и лишние запросы
+ * упирались бы в ожидание соединения Hikari с его таймаутом. Фильтр пропускает к обработке столько запросов,
+ * сколько соединений в пуле, остальные ждут своей очереди на семафоре. Actuator не ограничивается.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class DatabaseConcurrencyLimitFilter extends OncePerRequestFilter implements MeterBinder {
+    private final Semaphore permits;
+    private final int maxRequests;
+    private final long acquireTimeoutMillis;
+    private final ObjectMapper objectMapper;
+    private volatile Counter rejected;
+
+    public DatabaseConcurrencyLimitFilter(
+            @Value("${shareit.server.concurrency.max-requests:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int maxRequests,
+            @Value("${shareit.server.concurrency.acquire-timeout:30s}") Duration acquireTimeout,
+            ObjectMapper objectMapper) {
+        this.permits = new Semaphore(maxRequests, true);
+        this.maxRequests = maxRequests;
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("server.concurrency.waiting", permits, Semaphore::getQueueLength)
+                .description("Запросы, ожидающие разрешения на обработку")
+                .register(meterRegistry);
+        Gauge.builder("server.concurrency.active", permits, semaphore -> maxRequests - semaphore.availablePermits())
+                .description("Запросы в обработке")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("server.concurrency.rejected")
+                .description("Запросы, не дождавшиеся разрешения")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!acquire()) {
+            Counter counter = rejected;
+            if (counter != null) {
+                counter.increment();
+            }
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    new ErrorHandler.ErrorResponse("Сервер перегружен, повторите запрос позже"));
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            return permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.practicum.shareit.common;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Курсор ленты, упорядоченной по убыванию пары (время, id). Позиция передаётся клиенту
+ * строкой Base64 без паддинга, ключ времени в {@link ScrollPosition} задаётся при создании.
+ */
+public final class KeysetCursor {
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final Position FIRST = new Position(LocalDateTime.of(9999, 12, 31, 23, 59), Long.MAX_VALUE);
+    private static final String SEPARATOR = "|";
+
+    private final String timestampKey;
+
+    public KeysetCursor(String timestampKey) {
+        this.timestampKey = timestampKey;
+    }
+
+    /**
+     * Проверяет размер страницы: сервер доступен и в обход гейтвея, а страница читается с запасом в одну строку.
+     */
+    public static int checkPageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return size;
+    }
+
+    public Position decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            return new Position(LocalDateTime.parse(decoded.substring(0, separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    public String encode(ScrollPosition position) {
+        Map<String, ?> keys = ((KeysetScrollPosition) position).getKeys();
+        String raw = keys.get(timestampKey) + SEPARATOR + keys.get("id");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ScrollPosition positionOf(LocalDateTime timestamp, Long id) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put(timestampKey, timestamp);
+        keys.put("id", id);
+        return ScrollPosition.forward(keys);
+    }
+
+    public record Position(LocalDateTime timestamp, Long id) {
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum.shareit.common;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Учитывает ключи, изменённые в памяти этого экземпляра, для сверки индекса со снимком базы.
+ * Снимок не видит незафиксированных изменений и изменений, зафиксированных после его чтения,
+ * поэтому такие ключи при сверке пропускаются и остаются в текущем состоянии до следующей сверки.
+ */
+public class LocalChangeTracker<K> {
+    private final Map<K, Integer> inFlight = new HashMap<>();
+    private Set<K> changedDuringScan;
+
+    /**
+     * Отмечает изменение ключа. Внутри транзакции ключ считается незафиксированным до её завершения.
+     */
+    public synchronized void changed(K key) {
+        if (changedDuringScan != null) {
+            changedDuringScan.add(key);
+        }
+        if (TransactionCallbacks.afterCompletion(() -> completed(key))) {
+            inFlight.merge(key, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Вызывается перед чтением снимка.
+     */
+    public synchronized void startScan() {
+        changedDuringScan = new HashSet<>();
+    }
+
+    /**
+     * Возвращает ключи, которые нельзя сверять с прочитанным снимком.
+     */
+    public synchronized Set<K> finishScan() {
+        Set<K> skipped = changedDuringScan;
+        changedDuringScan = null;
+        skipped.addAll(inFlight.keySet());
+        return skipped;
+    }
+
+    private synchronized void completed(K key) {
+        inFlight.computeIfPresent(key, (ignored, count) -> count == 1 ? null : count - 1);
+        if (changedDuringScan != null) {
+            changedDuringScan.add(key);
+        }
+    }
+}
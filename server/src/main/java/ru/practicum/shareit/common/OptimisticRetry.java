@@ -0,0 +1,68 @@
+package ru.practicum.shareit.common;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Выполняет действие в отдельной транзакции и повторяет его, если коммит не прошёл из-за
+ * изменённой параллельно версии. Внутри уже открытой транзакции действие выполняется один раз:
+ * повторять её часть нельзя, конфликт уйдёт вызывающему.
+ */
+@Component
+public class OptimisticRetry {
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final Counter retries;
+
+    public OptimisticRetry(TransactionTemplate transactionTemplate,
+                           @Value("${shareit.optimistic-retry.max-attempts:5}") int maxAttempts,
+                           @Value("${shareit.optimistic-retry.backoff:10ms}") Duration backoff,
+                           MeterRegistry meterRegistry) {
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoff.toMillis();
+        this.retries = Counter.builder("optimistic.retry")
+                .description("Повторы транзакций после конфликта версий")
+                .register(meterRegistry);
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                retries.increment();
+                pause(attempt);
+            }
+        }
+    }
+
+    private void pause(int attempt) {
+        long bound = backoffMillis * attempt;
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Повтор транзакции прерван", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.practicum.shareit.common;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Включается, когда задана хотя бы одна реплика: вместо пула Spring Boot собирает основной пул из
+ * spring.datasource.*, пулы реплик и маршрутизацию между ними. Без реплик источник данных не меняется.
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicaRoutingProperties.class)
+@ConditionalOnProperty("shareit.datasource.replicas[0].url")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties dataSourceProperties,
+                                                             ReplicaRoutingProperties properties,
+                                                             MeterRegistry meterRegistry) {
+        List<HikariDataSource> replicaPools = new ArrayList<>();
+        for (ReplicaRoutingProperties.Replica replica : properties.replicas()) {
+            String username = replica.username() != null ? replica.username() : dataSourceProperties.determineUsername();
+            String password = replica.password() != null ? replica.password() : dataSourceProperties.determinePassword();
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(dataSourceProperties.determineDriverClassName())
+                    .url(replica.url())
+                    .username(username)
+                    .password(password)
+                    .build();
+            pool.setPoolName("replica-" + replicaPools.size());
+            pool.setMaximumPoolSize(primaryDataSource.getMaximumPoolSize());
+            pool.setReadOnly(true);
+            replicaPools.add(pool);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicaPools, properties, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,188 @@
+package ru.practicum.shareit.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отдаёт read-only транзакциям соединения реплик по кругу, остальным — соединения основной базы.
+ * Работает под {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: соединение
+ * выбирается при первом запросе, когда признак read-only транзакции уже выставлен.
+ * После коммита пишущей транзакции пользователь из заголовка X-Sharer-User-Id читает с основной базы,
+ * пока реплики могут не успеть получить его изменения. Если подходящих реплик нет, чтение идёт на основную базу.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    static final String USER_ID_HEADER = "X-Sharer-User-Id";
+    private static final String PRIMARY = "primary";
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final long lagCheckIntervalMillis;
+    private final String lagQuery;
+    private final Cache<Long, Boolean> recentWriters;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService lagChecks = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("replica-lag-check").factory());
+    private final Counter replicaReads;
+    private final Counter stickyReads;
+    private final Counter fallbackReads;
+    private volatile List<Replica> eligible = List.of();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicaPools,
+                                    ReplicaRoutingProperties properties, MeterRegistry meterRegistry) {
+        this.replicas = replicaPools.stream().map(Replica::new).toList();
+        this.maxLagMillis = properties.maxLag().toMillis();
+        this.lagCheckIntervalMillis = properties.lagCheckInterval().toMillis();
+        this.lagQuery = StringUtils.hasText(properties.lagQuery()) ? properties.lagQuery() : null;
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(properties.readYourWritesWindow())
+                .build();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Replica replica : replicas) {
+            targets.put(replica.key(), replica.dataSource());
+            Gauge.builder("datasource.replica.eligible", replica, candidate -> candidate.eligible ? 1 : 0)
+                    .description("Участвует ли реплика в чтении")
+                    .tag("replica", replica.key())
+                    .register(meterRegistry);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        this.replicaReads = readCounter(meterRegistry, "replica");
+        this.stickyReads = readCounter(meterRegistry, "sticky");
+        this.fallbackReads = readCounter(meterRegistry, "fallback");
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkReplicas();
+        lagChecks.scheduleWithFixedDelay(this::checkReplicas, lagCheckIntervalMillis, lagCheckIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        lagChecks.shutdownNow();
+        replicas.forEach(replica -> replica.dataSource().close());
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWriterOnCommit();
+            return PRIMARY;
+        }
+        Long userId = currentUserId();
+        if (userId != null && recentWriters.getIfPresent(userId) != null) {
+            stickyReads.increment();
+            return PRIMARY;
+        }
+        List<Replica> candidates = eligible;
+        if (candidates.isEmpty()) {
+            fallbackReads.increment();
+            return PRIMARY;
+        }
+        replicaReads.increment();
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size())).key();
+    }
+
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            replica.eligible = withinLag(replica.dataSource());
+        }
+        eligible = replicas.stream().filter(replica -> replica.eligible).toList();
+    }
+
+    private boolean withinLag(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            if (lagQuery == null) {
+                return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet lag = statement.executeQuery(lagQuery)) {
+                return lag.next() && lag.getLong(1) <= maxLagMillis;
+            }
+        } catch (SQLException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void rememberWriterOnCommit() {
+        Long userId = currentUserId();
+        if (userId == null || !TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(userId, Boolean.TRUE);
+            }
+        });
+    }
+
+    private static Long currentUserId() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return null;
+        }
+        String header = attributes.getRequest().getHeader(USER_ID_HEADER);
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(header.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("datasource.read.routed")
+                .description("Соединения read-only транзакций по месту чтения")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    private static final class Replica {
+        private final HikariDataSource dataSource;
+        private volatile boolean eligible;
+
+        private Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private String key() {
+            return dataSource.getPoolName();
+        }
+
+        private HikariDataSource dataSource() {
+            return dataSource;
+        }
+    }
+}
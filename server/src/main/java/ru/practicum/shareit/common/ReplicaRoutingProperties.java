@@ -0,0 +1,28 @@
+package ru.practicum.shareit.common;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Настройки чтения с реплик. Реплика, отстающая больше чем на maxLag или не ответившая на проверку,
+ * исключается из чтения до следующей удачной проверки. lagQuery возвращает отставание в миллисекундах;
+ * если запрос не задан, проверяется только доступность соединения.
+ * Пользователь, только что изменивший данные, читает с основной базы в течение readYourWritesWindow.
+ */
+@ConfigurationProperties("shareit.datasource")
+public record ReplicaRoutingProperties(
+        @DefaultValue List<Replica> replicas,
+        @DefaultValue("1s") Duration maxLag,
+        @DefaultValue("1s") Duration lagCheckInterval,
+        String lagQuery,
+        @DefaultValue("3s") Duration readYourWritesWindow) {
+
+    /**
+     * Подключение к реплике. Если имя пользователя или пароль не заданы, берутся от основной базы.
+     */
+    public record Replica(String url, String username, String password) {
+    }
+}
@@ -0,0 +1,133 @@
+package ru.practicum.shareit.common;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.model.domain.NavigableRole;
+import org.hibernate.stat.internal.StatisticsImpl;
+
+/**
+ * Статистика Hibernate, которая помимо общих счётчиков копит счётчики вызова репозитория, идущего в текущем потоке.
+ * Вызов открывает {@link RepositoryInvocationMetrics}. Запросы вне репозиториев (flush при коммите,
+ * ленивые загрузки в сервисах) попадают только в общие счётчики.
+ */
+public class RepositoryAwareStatistics extends StatisticsImpl {
+    private static final ThreadLocal<Invocation> CURRENT = new ThreadLocal<>();
+
+    public RepositoryAwareStatistics(SessionFactoryImplementor sessionFactory) {
+        super(sessionFactory);
+    }
+
+    static Invocation begin() {
+        Invocation invocation = new Invocation(CURRENT.get());
+        CURRENT.set(invocation);
+        return invocation;
+    }
+
+    static void end(Invocation invocation) {
+        if (invocation.outer == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(invocation.outer);
+        }
+    }
+
+    @Override
+    public void prepareStatement() {
+        super.prepareStatement();
+        Invocation invocation = CURRENT.get();
+        if (invocation != null) {
+            invocation.statements++;
+        }
+    }
+
+    @Override
+    public void fetchEntity(String entityName) {
+        super.fetchEntity(entityName);
+        Invocation invocation = CURRENT.get();
+        if (invocation != null) {
+            invocation.entityFetches++;
+        }
+    }
+
+    @Override
+    public void fetchCollection(String role) {
+        super.fetchCollection(role);
+        Invocation invocation = CURRENT.get();
+        if (invocation != null) {
+            invocation.collectionFetches++;
+        }
+    }
+
+    @Override
+    public void entityCacheHit(NavigableRole entityName, String regionName) {
+        super.entityCacheHit(entityName, regionName);
+        secondLevelCacheHit();
+    }
+
+    @Override
+    public void collectionCacheHit(NavigableRole collectionRole, String regionName) {
+        super.collectionCacheHit(collectionRole, regionName);
+        secondLevelCacheHit();
+    }
+
+    @Override
+    public void entityCacheMiss(NavigableRole entityName, String regionName) {
+        super.entityCacheMiss(entityName, regionName);
+        secondLevelCacheMiss();
+    }
+
+    @Override
+    public void collectionCacheMiss(NavigableRole collectionRole, String regionName) {
+        super.collectionCacheMiss(collectionRole, regionName);
+        secondLevelCacheMiss();
+    }
+
+    @Override
+    public void queryCacheHit(String hql, String regionName) {
+        super.queryCacheHit(hql, regionName);
+        Invocation invocation = CURRENT.get();
+        if (invocation != null) {
+            invocation.queryCacheHits++;
+        }
+    }
+
+    @Override
+    public void queryCacheMiss(String hql, String regionName) {
+        super.queryCacheMiss(hql, regionName);
+        Invocation invocation = CURRENT.get();
+        if (invocation != null) {
+            invocation.queryCacheMisses++;
+        }
+    }
+
+    private static void secondLevelCacheHit() {
+        Invocation invocation = CURRENT.get();
+        if (invocation != null) {
+            invocation.secondLevelCacheHits++;
+        }
+    }
+
+    private static void secondLevelCacheMiss() {
+        Invocation invocation = CURRENT.get();
+        if (invocation != null) {
+            invocation.secondLevelCacheMisses++;
+        }
+    }
+
+    /**
+     * Счётчики одного вызова репозитория. Вложенный вызов считается отдельно от внешнего.
+     */
+    static final class Invocation {
+        private final Invocation outer;
+        int statements;
+        int entityFetches;
+        int collectionFetches;
+        int secondLevelCacheHits;
+        int secondLevelCacheMisses;
+        int queryCacheHits;
+        int queryCacheMisses;
+
+        private Invocation(Invocation outer) {
+            this.outer = outer;
+        }
+    }
+}
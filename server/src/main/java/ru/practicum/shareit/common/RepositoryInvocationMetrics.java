@@ -0,0 +1,108 @@
+package ru.practicum.shareit.common;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Снимает статистику Hibernate с каждого вызова репозитория: сколько выполнено запросов, догружено сущностей
+ * и коллекций, сколько было попаданий и промахов кэша второго уровня и кэша запросов. Метрики помечены тегами
+ * repository и method, как и время вызовов в spring.data.repository.invocations.
+ * Для методов, возвращающих Stream, учитывается только открытие курсора.
+ */
+@Component
+public class RepositoryInvocationMetrics implements BeanPostProcessor {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public RepositoryInvocationMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                    (proxyFactory, repository) -> proxyFactory.addAdvice(
+                            new StatisticsInterceptor(repository.getRepositoryInterface().getSimpleName()))));
+        }
+        return bean;
+    }
+
+    private final class StatisticsInterceptor implements MethodInterceptor {
+        private final String repository;
+        private final Map<Method, Meters> meters = new ConcurrentHashMap<>();
+
+        private StatisticsInterceptor(String repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            RepositoryAwareStatistics.Invocation counts = RepositoryAwareStatistics.begin();
+            try {
+                return invocation.proceed();
+            } finally {
+                RepositoryAwareStatistics.end(counts);
+                MeterRegistry registry = meterRegistry.getIfAvailable();
+                if (registry != null) {
+                    meters.computeIfAbsent(invocation.getMethod(), method -> new Meters(registry,
+                            Tags.of("repository", repository, "method", method.getName()))).record(counts);
+                }
+            }
+        }
+    }
+
+    private static final class Meters {
+        private final DistributionSummary statements;
+        private final DistributionSummary entityFetches;
+        private final DistributionSummary collectionFetches;
+        private final DistributionSummary secondLevelCacheHits;
+        private final DistributionSummary secondLevelCacheMisses;
+        private final DistributionSummary queryCacheHits;
+        private final DistributionSummary queryCacheMisses;
+
+        private Meters(MeterRegistry registry, Tags tags) {
+            statements = summary(registry, "hibernate.repository.statements", "Подготовленные SQL-запросы", tags);
+            entityFetches = summary(registry, "hibernate.repository.entity.fetches",
+                    "Догрузки сущностей отдельным запросом", tags);
+            collectionFetches = summary(registry, "hibernate.repository.collection.fetches",
+                    "Догрузки коллекций отдельным запросом", tags);
+            secondLevelCacheHits = summary(registry, "hibernate.repository.second.level.cache.hits",
+                    "Попадания в кэш второго уровня", tags);
+            secondLevelCacheMisses = summary(registry, "hibernate.repository.second.level.cache.misses",
+                    "Промахи кэша второго уровня", tags);
+            queryCacheHits = summary(registry, "hibernate.repository.query.cache.hits",
+                    "Попадания в кэш запросов", tags);
+            queryCacheMisses = summary(registry, "hibernate.repository.query.cache.misses",
+                    "Промахи кэша запросов", tags);
+        }
+
+        private void record(RepositoryAwareStatistics.Invocation counts) {
+            statements.record(counts.statements);
+            entityFetches.record(counts.entityFetches);
+            collectionFetches.record(counts.collectionFetches);
+            secondLevelCacheHits.record(counts.secondLevelCacheHits);
+            secondLevelCacheMisses.record(counts.secondLevelCacheMisses);
+            queryCacheHits.record(counts.queryCacheHits);
+            queryCacheMisses.record(counts.queryCacheMisses);
+        }
+
+        private static DistributionSummary summary(MeterRegistry registry, String name, String description,
+                                                   Tags tags) {
+            return DistributionSummary.builder(name)
+                    .description(description)
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.common;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * Подключается через hibernate.stats.factory.
+ */
+public class RepositoryStatisticsFactory implements StatisticsFactory {
+
+    @Override
+    public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+        return new RepositoryAwareStatistics(sessionFactory);
+    }
+}
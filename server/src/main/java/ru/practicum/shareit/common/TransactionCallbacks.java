@@ -0,0 +1,57 @@
+package ru.practicum.shareit.common;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Компенсирующие действия для изменений в памяти, применённых внутри транзакции.
+ * При откате выполняются в обратном порядке регистрации.
+ */
+public class TransactionCallbacks {
+
+    public static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        RollbackActions actions = (RollbackActions) TransactionSynchronizationManager.getResource(RollbackActions.class);
+        if (actions == null) {
+            actions = new RollbackActions();
+            TransactionSynchronizationManager.bindResource(RollbackActions.class, actions);
+            TransactionSynchronizationManager.registerSynchronization(actions);
+        }
+        actions.actions.push(action);
+    }
+
+    /**
+     * Выполняет действие после завершения транзакции, зафиксирована она или откачена.
+     *
+     * @return false, если синхронизация транзакции не активна и действие не зарегистрировано
+     */
+    public static boolean afterCompletion(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+        return true;
+    }
+
+    private static class RollbackActions implements TransactionSynchronization {
+        private final Deque<Runnable> actions = new ArrayDeque<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(RollbackActions.class);
+            if (status == STATUS_ROLLED_BACK) {
+                actions.forEach(Runnable::run);
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentNewDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
 import ru.practicum.shareit.item.service.ItemService;
 
 import java.util.List;
@@ -25,6 +26,13 @@ public class ItemController {
         return itemService.createItem(userId, itemDto);
     }
 
+    @PostMapping("/import")
+    @ResponseStatus(HttpStatus.OK)
+    public List<ItemImportResultDto> importItems(@RequestHeader(HEADER_USER_ID) Long userId,
+                                                 @RequestBody List<ItemDto> itemDtos) {
+        return itemService.importItems(userId, itemDtos);
+    }
+
     @GetMapping("/{itemId}")
     @ResponseStatus(HttpStatus.OK)
     public ItemDto getItem(@RequestHeader(HEADER_USER_ID) Long userId,
@@ -0,0 +1,15 @@
+package ru.practicum.shareit.item.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ItemImportResultDto(Long id, String error) {
+
+    public static ItemImportResultDto created(Long id) {
+        return new ItemImportResultDto(id, null);
+    }
+
+    public static ItemImportResultDto failed(String error) {
+        return new ItemImportResultDto(null, error);
+    }
+}
@@ -0,0 +1,4 @@
+package ru.practicum.shareit.item.dto;
+
+public record ItemSearchDto(Long id, String name, String description, Long requestId) {
+}
@@ -3,9 +3,13 @@ package ru.practicum.shareit.item.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.user.model.User;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,9 +18,11 @@ import java.util.List;
 @RequiredArgsConstructor
 @Entity
 @Table(name = "items")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "items")
 public class Item {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "items_seq")
+    @SequenceGenerator(name = "items_seq", sequenceName = "items_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -36,6 +42,13 @@ public class Item {
     @JoinColumn(name = "request_id")
     private ItemRequest request;
 
+    /**
+     * Время последнего изменения, по нему поисковый индекс подтягивает изменения с других экземпляров.
+     */
+    @UpdateTimestamp
+    @Column(nullable = false, name = "updated_at")
+    private LocalDateTime updatedAt;
+
     @Transient
     private List<Comment> comments = new ArrayList<>();
 }
@@ -1,6 +1,8 @@
 package ru.practicum.shareit.item.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.practicum.shareit.item.model.Comment;
 
 import java.util.List;
@@ -8,5 +10,9 @@ import java.util.List;
 public interface CommentRepository extends JpaRepository<Comment, Long> {
     List<Comment> findAllByItemId(Long itemId);
 
+    @EntityGraph(attributePaths = "author")
     List<Comment> findAllByItemIdIn(List<Long> itemIds);
+
+    @Query("select distinct c.item.id from Comment c where c.author.id = :authorId")
+    List<Long> findItemIdsByAuthorId(Long authorId);
 }
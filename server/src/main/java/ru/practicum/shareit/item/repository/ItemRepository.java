@@ -1,9 +1,18 @@
 package ru.practicum.shareit.item.repository;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.item.dto.ItemBookingDatesDto;
+import ru.practicum.shareit.item.dto.ItemSearchDto;
 import ru.practicum.shareit.item.model.Item;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
@@ -11,11 +20,49 @@ public interface ItemRepository extends JpaRepository<Item, Long> {
 
     @Query("select i from Item i " +
             "where i.available = true and " +
-            "lower(i.name) like lower(concat('%', ?1, '%')) " +
-            "or lower(i.description) like lower(concat('%', ?1, '%'))")
-    List<Item> findByRequest(String text);
+            "(lower(i.name) like lower(concat('%', ?1, '%')) " +
+            "or lower(i.description) like lower(concat('%', ?1, '%'))) " +
+            "order by i.id")
+    List<Item> findByRequest(String text, Limit limit);
 
+    @Query("select new ru.practicum.shareit.item.dto.ItemSearchDto(i.id, i.name, i.description, r.id) " +
+            "from Item i left join i.request r where i.available = true order by i.id")
+    List<ItemSearchDto> findAllAvailableForSearch();
+
+    @Query("select new ru.practicum.shareit.item.dto.ItemSearchDto(i.id, i.name, i.description, r.id) " +
+            "from Item i left join i.request r where i.available = true and i.updatedAt >= :updatedFrom " +
+            "order by i.id")
+    List<ItemSearchDto> findAllAvailableForSearchUpdatedFrom(LocalDateTime updatedFrom);
+
+    @Query("select i.id from Item i where i.available = false and i.updatedAt >= :updatedFrom")
+    List<Long> findIdsUnavailableUpdatedFrom(LocalDateTime updatedFrom);
+
+    @Query("select i.id from Item i left join i.request r " +
+            "where i.owner.id = :userId or r.requester.id = :userId")
+    List<Long> findIdsByOwnerIdOrRequesterId(Long userId);
+
+    /**
+     * Блокирует строки вещей до конца транзакции, чтобы подтверждения бронирований одной вещи шли по очереди.
+     * Порядок по id исключает взаимоблокировку пакетных подтверждений.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from Item i where i.id in :itemIds order by i.id")
+    List<Item> findAllForApprovalByIdIn(Collection<Long> itemIds);
+
+    @EntityGraph(attributePaths = "owner")
     List<Item> findAllByRequestId(Long requestId);
 
+    @EntityGraph(attributePaths = "owner")
     List<Item> findAllByRequestIdIn(List<Long> itemRequestIds);
+
+    @Query("select new ru.practicum.shareit.item.dto.ItemBookingDatesDto(i.id, " +
+            "(select max(l.start) from Booking l " +
+            "where l.item = i and l.status <> :excludedStatus and l.end < :now), " +
+            "(select min(n.end) from Booking n " +
+            "where n.item = i and n.status <> :excludedStatus and n.start = " +
+            "(select min(f.start) from Booking f " +
+            "where f.item = i and f.status <> :excludedStatus and f.start > :now))) " +
+            "from Item i where i.id in :itemIds")
+    List<ItemBookingDatesDto> findBookingDatesByIdIn(List<Long> itemIds, LocalDateTime now,
+                                                     BookingStatus excludedStatus);
 }
@@ -0,0 +1,58 @@
+package ru.practicum.shareit.item.service;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.shareit.item.dto.ItemDto;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Кэш карточек вещей для getItem. Карточки сбрасываются после коммита изменившей их транзакции.
+ * Чтение не транзакционное и может загрузить старую строку до коммита, а положить её в кэш уже после сброса.
+ * Поэтому у каждой карточки есть поколение: сброс увеличивает его, а загруженная карточка, поколение которой
+ * за время загрузки изменилось, из кэша убирается.
+ * Изменения, сделанные на других экземплярах сервера, сюда не доходят: такие карточки живут до истечения
+ * expireAfterWrite из spring.cache.caffeine.spec.
+ */
+@Component
+public class ItemCardCache {
+    static final String ITEMS_CACHE = "items";
+    private static final int STRIPES = 1024;
+
+    private final Cache cache;
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    public ItemCardCache(CacheManager cacheManager) {
+        this.cache = Objects.requireNonNull(cacheManager.getCache(ITEMS_CACHE), "Не настроен кэш " + ITEMS_CACHE);
+    }
+
+    public ItemDto get(Long itemId, Supplier<ItemDto> loader) {
+        ItemDto cached = cache.get(itemId, ItemDto.class);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = generations.get(stripe(itemId));
+        ItemDto loaded = loader.get();
+        cache.put(itemId, loaded);
+        if (generations.get(stripe(itemId)) != generation) {
+            cache.evict(itemId);
+        }
+        return loaded;
+    }
+
+    @TransactionalEventListener
+    public void onItemChanged(ItemChangedEvent event) {
+        for (Long itemId : event.itemIds()) {
+            generations.incrementAndGet(stripe(itemId));
+            cache.evict(itemId);
+        }
+    }
+
+    private static int stripe(Long itemId) {
+        return Math.floorMod(itemId.hashCode(), STRIPES);
+    }
+}
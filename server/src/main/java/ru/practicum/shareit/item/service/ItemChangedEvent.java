@@ -0,0 +1,14 @@
+package ru.practicum.shareit.item.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Событие изменения карточек вещей.
+ */
+public record ItemChangedEvent(Collection<Long> itemIds) {
+
+    public ItemChangedEvent(Long itemId) {
+        this(List.of(itemId));
+    }
+}
@@ -0,0 +1,405 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.common.LocalChangeTracker;
+import ru.practicum.shareit.common.TransactionCallbacks;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemSearchDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Триграммный инвертированный индекс доступных вещей для поиска по подстроке в названии и описании.
+ * Списки вещей по триграммам хранятся отсортированными массивами id, поиск возвращает не больше
+ * shareit.items.search.max-results лучших совпадений.
+ * Изменения применяются сразу и откатываются вместе с транзакцией.
+ * Изменения в обход этого экземпляра подтягиваются раз в shareit.items.search.reconcile-interval по updated_at,
+ * с перекрытием shareit.items.search.reconcile-overlap на незавершённые транзакции и расхождение часов экземпляров.
+ * Удаления в обход экземпляра (каскады базы, ручной SQL) видит только полная сверка
+ * раз в shareit.items.search.full-reconcile-interval, до неё поиск может их не видеть.
+ * Запросы короче триграммы, а также поиск до прогрева, выполняются через базу.
+ */
+@Component
+public class ItemSearchIndex {
+    private static final int GRAM = 3;
+
+    private final ItemRepository itemRepository;
+    @Getter
+    private final int maxResults;
+    private final Duration reconcileOverlap;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final LocalChangeTracker<Long> localChanges = new LocalChangeTracker<>();
+    private volatile boolean warmedUp;
+    private LocalDateTime changedFrom;
+
+    @Autowired
+    public ItemSearchIndex(ItemRepository itemRepository,
+                           @Value("${shareit.items.search.max-results:100}") int maxResults,
+                           @Value("${shareit.items.search.reconcile-overlap:PT1M}") Duration reconcileOverlap) {
+        this.itemRepository = itemRepository;
+        this.maxResults = maxResults;
+        this.reconcileOverlap = reconcileOverlap;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void warmUp() {
+        LocalDateTime now = LocalDateTime.now();
+        List<ItemSearchDto> items = itemRepository.findAllAvailableForSearch();
+        lock.writeLock().lock();
+        try {
+            for (ItemSearchDto item : items) {
+                if (!documents.containsKey(item.id())) {
+                    index(new Document(item));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        changedFrom = now.minus(reconcileOverlap);
+        warmedUp = true;
+    }
+
+    /**
+     * Применяет изменения вещей с прошлой сверки. Если изменённая вещь пропущена из-за локальных изменений,
+     * окно изменений не сдвигается, и она перечитывается при следующей сверке.
+     */
+    @Scheduled(initialDelayString = "${shareit.items.search.reconcile-interval:PT30S}",
+            fixedDelayString = "${shareit.items.search.reconcile-interval:PT30S}")
+    public synchronized void reconcile() {
+        if (!warmedUp) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        localChanges.startScan();
+        List<ItemSearchDto> available;
+        List<Long> unavailable;
+        try {
+            available = itemRepository.findAllAvailableForSearchUpdatedFrom(changedFrom);
+            unavailable = itemRepository.findIdsUnavailableUpdatedFrom(changedFrom);
+        } catch (RuntimeException e) {
+            localChanges.finishScan();
+            throw e;
+        }
+        boolean deferred = false;
+        lock.writeLock().lock();
+        try {
+            Set<Long> skipped = localChanges.finishScan();
+            List<Long> removed = new ArrayList<>();
+            List<Document> changed = new ArrayList<>();
+            for (Long itemId : unavailable) {
+                if (skipped.contains(itemId)) {
+                    deferred = true;
+                } else {
+                    removed.add(itemId);
+                }
+            }
+            for (ItemSearchDto item : available) {
+                Document document = new Document(item);
+                if (skipped.contains(item.id())) {
+                    deferred = true;
+                } else if (!document.equals(documents.get(item.id()))) {
+                    changed.add(document);
+                }
+            }
+            apply(removed, changed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!deferred) {
+            changedFrom = now.minus(reconcileOverlap);
+        }
+    }
+
+    /**
+     * Приводит индекс к снимку доступных вещей из базы. Вещи, изменённые в этом экземпляре во время чтения снимка
+     * или в незавершённых транзакциях, не трогаются.
+     */
+    @Scheduled(initialDelayString = "${shareit.items.search.full-reconcile-interval:PT10M}",
+            fixedDelayString = "${shareit.items.search.full-reconcile-interval:PT10M}")
+    public synchronized void reconcileAll() {
+        if (!warmedUp) {
+            return;
+        }
+        localChanges.startScan();
+        List<ItemSearchDto> items;
+        try {
+            items = itemRepository.findAllAvailableForSearch();
+        } catch (RuntimeException e) {
+            localChanges.finishScan();
+            throw e;
+        }
+        Map<Long, Document> snapshot = new HashMap<>();
+        for (ItemSearchDto item : items) {
+            snapshot.put(item.id(), new Document(item));
+        }
+        lock.writeLock().lock();
+        try {
+            Set<Long> skipped = localChanges.finishScan();
+            List<Long> removed = new ArrayList<>();
+            for (Long itemId : documents.keySet()) {
+                if (!snapshot.containsKey(itemId) && !skipped.contains(itemId)) {
+                    removed.add(itemId);
+                }
+            }
+            List<Document> changed = new ArrayList<>();
+            for (Document document : snapshot.values()) {
+                Long itemId = document.item().id();
+                if (!skipped.contains(itemId) && !document.equals(documents.get(itemId))) {
+                    changed.add(document);
+                }
+            }
+            apply(removed, changed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает не больше shareit.items.search.max-results вещей, упорядоченных по качеству совпадения,
+     * или пустой Optional, если запрос нужно выполнить через базу.
+     */
+    public Optional<List<ItemDto>> search(String text) {
+        String query = normalize(text);
+        if (!warmedUp || query.length() < GRAM) {
+            return Optional.empty();
+        }
+        Comparator<Match> order = Comparator.comparingInt(Match::rank)
+                .thenComparing(match -> match.document().item().id());
+        PriorityQueue<Match> best = new PriorityQueue<>(order.reversed());
+        lock.readLock().lock();
+        try {
+            List<PostingList> lists = new ArrayList<>();
+            for (String gram : gramsOf(query)) {
+                PostingList ids = postings.get(gram);
+                if (ids == null) {
+                    return Optional.of(List.of());
+                }
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(PostingList::size));
+            PostingList shortest = lists.getFirst();
+            int[] positions = new int[lists.size()];
+            for (int i = 0; i < shortest.size(); i++) {
+                // id идут по возрастанию, поэтому при равном ранге следующие вещи хуже уже найденных
+                Match worst = best.size() < maxResults ? null : best.peek();
+                if (worst != null && worst.rank() == 0) {
+                    break;
+                }
+                long id = shortest.get(i);
+                if (containsInAll(lists, positions, id)) {
+                    Document document = documents.get(id);
+                    int rank = document.rank(query);
+                    if (rank != Document.NO_MATCH && (worst == null || rank < worst.rank())) {
+                        if (worst != null) {
+                            best.poll();
+                        }
+                        best.add(new Match(document, rank));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Optional.of(best.stream()
+                .sorted(order)
+                .map(match -> match.document().toItemDto())
+                .toList());
+    }
+
+    public void put(Item item) {
+        localChanges.changed(item.getId());
+        Document previous = replace(item.getId(), Boolean.TRUE.equals(item.getAvailable())
+                ? new Document(new ItemSearchDto(item.getId(), item.getName(), item.getDescription(),
+                        item.getRequest() != null ? item.getRequest().getId() : null))
+                : null);
+        TransactionCallbacks.afterRollback(() -> replace(item.getId(), previous));
+    }
+
+    public void remove(Long itemId) {
+        localChanges.changed(itemId);
+        Document previous = replace(itemId, null);
+        if (previous != null) {
+            TransactionCallbacks.afterRollback(() -> replace(itemId, previous));
+        }
+    }
+
+    /**
+     * Убирает вещи, которые база удалит каскадно вместе с пользователем:
+     * его собственные и созданные в ответ на его запросы.
+     *
+     * @return id этих вещей
+     */
+    public List<Long> removeUser(Long userId) {
+        List<Long> itemIds = itemRepository.findIdsByOwnerIdOrRequesterId(userId);
+        for (Long itemId : itemIds) {
+            remove(itemId);
+        }
+        return itemIds;
+    }
+
+    private Document replace(Long itemId, Document document) {
+        lock.writeLock().lock();
+        try {
+            Document previous = unindex(itemId);
+            if (document != null) {
+                index(document);
+            }
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Применяет изменения сверки пачкой: каждый затронутый список триграммы чистится за один проход,
+     * а новые версии вещей добавляются по возрастанию id, то есть в конец списков.
+     */
+    private void apply(List<Long> removed, List<Document> changed) {
+        Set<Long> unindexed = new HashSet<>();
+        Set<String> grams = new HashSet<>();
+        for (Long itemId : removed) {
+            unindexLater(itemId, unindexed, grams);
+        }
+        for (Document document : changed) {
+            unindexLater(document.item().id(), unindexed, grams);
+        }
+        for (String gram : grams) {
+            PostingList ids = postings.get(gram);
+            ids.removeIf(unindexed::contains);
+            if (ids.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+        changed.sort(Comparator.comparing(document -> document.item().id()));
+        changed.forEach(this::index);
+    }
+
+    private void unindexLater(Long itemId, Set<Long> unindexed, Set<String> grams) {
+        Document document = documents.remove(itemId);
+        if (document != null) {
+            unindexed.add(itemId);
+            grams.addAll(document.grams());
+        }
+    }
+
+    private void index(Document document) {
+        Long id = document.item().id();
+        documents.put(id, document);
+        for (String gram : document.grams()) {
+            postings.computeIfAbsent(gram, key -> new PostingList()).add(id);
+        }
+    }
+
+    private Document unindex(Long itemId) {
+        Document document = documents.remove(itemId);
+        if (document == null) {
+            return null;
+        }
+        for (String gram : document.grams()) {
+            PostingList ids = postings.get(gram);
+            ids.remove(itemId);
+            if (ids.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Проверяет id во всех списках, кроме первого. Id проверяются по возрастанию,
+     * поэтому позиции в списках только сдвигаются вперёд.
+     */
+    private static boolean containsInAll(List<PostingList> lists, int[] positions, long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            PostingList ids = lists.get(i);
+            positions[i] = ids.seek(id, positions[i]);
+            if (positions[i] == ids.size() || ids.get(positions[i]) != id) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> gramsOf(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private record Match(Document document, int rank) {
+    }
+
+    private record Document(ItemSearchDto item, String name, String description) {
+        static final int NO_MATCH = Integer.MAX_VALUE;
+
+        Document(ItemSearchDto item) {
+            this(item, normalize(item.name()), normalize(item.description()));
+        }
+
+        Set<String> grams() {
+            Set<String> grams = gramsOf(name);
+            grams.addAll(gramsOf(description));
+            return grams;
+        }
+
+        /**
+         * Возвращает ранг совпадения, меньше — лучше, или NO_MATCH, если запрос не входит ни в название,
+         * ни в описание.
+         */
+        int rank(String query) {
+            if (name.equals(query)) {
+                return 0;
+            }
+            if (name.startsWith(query)) {
+                return 1;
+            }
+            if (name.contains(query)) {
+                return 2;
+            }
+            if (description.startsWith(query)) {
+                return 3;
+            }
+            return description.contains(query) ? 4 : NO_MATCH;
+        }
+
+        ItemDto toItemDto() {
+            ItemDto itemDto = new ItemDto();
+            itemDto.setId(item.id());
+            itemDto.setName(item.name());
+            itemDto.setDescription(item.description());
+            itemDto.setAvailable(true);
+            itemDto.setRequestId(item.requestId());
+            itemDto.setComments(new ArrayList<>());
+            return itemDto;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package ru.practicum.shareit.item.service;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentNewDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
 
 import java.util.List;
 
@@ -10,6 +11,8 @@ public interface ItemService {
 
     ItemDto createItem(Long userId, ItemDto itemDto);
 
+    List<ItemImportResultDto> importItems(Long userId, List<ItemDto> itemDtos);
+
     ItemDto updateItem(Long userId, Long itemId, ItemDto itemDto);
 
     ItemDto getItem(Long userId, Long itemId);
@@ -1,15 +1,21 @@
 package ru.practicum.shareit.item.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.BookingStatus;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.service.BookingAvailabilityIndex;
 import ru.practicum.shareit.exceptions.NotFoundException;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentNewDto;
+import ru.practicum.shareit.item.dto.ItemBookingDatesDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
 import ru.practicum.shareit.item.mapper.CommentMapper;
 import ru.practicum.shareit.item.mapper.ItemMapper;
 import ru.practicum.shareit.item.model.Comment;
@@ -22,19 +28,26 @@ import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "shareit.service", histogram = true)
 @RequiredArgsConstructor
 public class ItemServiceImpl implements ItemService {
-
     private final UserRepository userRepository;
     private final ItemRepository itemRepository;
     private final BookingRepository bookingRepository;
     private final CommentRepository commentRepository;
     private final ItemRequestRepository itemRequestRepository;
+    private final BookingAvailabilityIndex bookingAvailabilityIndex;
+    private final ItemSearchIndex itemSearchIndex;
+    private final ItemCardCache itemCardCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -51,9 +64,43 @@ public class ItemServiceImpl implements ItemService {
         }
 
         itemRepository.save(item);
+        itemSearchIndex.put(item);
         return ItemMapper.toItemDto(item);
         }
 
+    @Override
+    @Transactional
+    public List<ItemImportResultDto> importItems(Long userId, List<ItemDto> itemDtos) {
+        User user = findUser(userId);
+        Map<Long, ItemRequest> requests = itemRequestRepository.findAllById(itemDtos.stream()
+                        .map(ItemDto::getRequestId)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(ItemRequest::getId, Function.identity()));
+
+        List<Item> items = new ArrayList<>();
+        for (ItemDto itemDto : itemDtos) {
+            ItemRequest itemRequest = itemDto.getRequestId() == null ? null : requests.get(itemDto.getRequestId());
+            items.add(itemDto.getRequestId() != null && itemRequest == null
+                    ? null
+                    : ItemMapper.toItem(itemDto, user, itemRequest));
+        }
+        itemRepository.saveAll(items.stream().filter(Objects::nonNull).toList());
+
+        List<ItemImportResultDto> results = new ArrayList<>();
+        for (Item item : items) {
+            if (item == null) {
+                results.add(ItemImportResultDto.failed("Запрос с таким id не найден"));
+            } else {
+                itemSearchIndex.put(item);
+                results.add(ItemImportResultDto.created(item.getId()));
+            }
+        }
+        return results;
+    }
+
     @Override
     @Transactional
     public ItemDto updateItem(Long userId, Long itemId, ItemDto itemDto) {
@@ -74,17 +121,21 @@ public class ItemServiceImpl implements ItemService {
         }
 
         itemRepository.save(updatedItem);
+        itemSearchIndex.put(updatedItem);
+        eventPublisher.publishEvent(new ItemChangedEvent(itemId));
         return ItemMapper.toItemDto(updatedItem);
     }
 
     @Override
     public ItemDto getItem(Long userId, Long itemId) {
-        Item item = findItem(itemId);
-        ItemDto itemDto = ItemMapper.toItemDto(item);
-        itemDto.setComments(commentRepository.findAllByItemId(itemId).stream()
-                .map(CommentMapper::toCommentDto)
-                .toList());
-        return itemDto;
+        return itemCardCache.get(itemId, () -> {
+            Item item = findItem(itemId);
+            ItemDto itemDto = ItemMapper.toItemDto(item);
+            itemDto.setComments(commentRepository.findAllByItemId(itemId).stream()
+                    .map(CommentMapper::toCommentDto)
+                    .toList());
+            return itemDto;
+        });
     }
 
     @Override
@@ -92,11 +143,17 @@ public class ItemServiceImpl implements ItemService {
     public void deleteItem(Long userId, Long itemId) {
         Item item = findItem(itemId);
         itemRepository.delete(item);
+        bookingAvailabilityIndex.removeItem(itemId);
+        itemSearchIndex.remove(itemId);
+        eventPublisher.publishEvent(new ItemChangedEvent(itemId));
     }
 
     @Override
     public List<ItemDto> getAllItems(Long userId) {
         List<Item> items = itemRepository.findByOwnerId(userId);
+        if (items.isEmpty()) {
+            return List.of();
+        }
         List<Long> itemIds = items.stream()
                 .map(Item::getId)
                 .toList();
@@ -107,12 +164,21 @@ public class ItemServiceImpl implements ItemService {
 
         items.forEach(item -> item.setComments(comments.getOrDefault(item.getId(), List.of())));
 
+        Map<Long, ItemBookingDatesDto> bookingDates = itemRepository
+                .findBookingDatesByIdIn(itemIds, LocalDateTime.now(), BookingStatus.REJECTED)
+                .stream()
+                .collect(Collectors.toMap(ItemBookingDatesDto::itemId, Function.identity()));
+
         List<ItemDto> itemDtos = items.stream()
                 .map(ItemMapper::toItemDto)
                 .toList();
 
         for (ItemDto itemDto : itemDtos) {
-            setLastAndNextBooking(itemDto);
+            ItemBookingDatesDto dates = bookingDates.get(itemDto.getId());
+            if (dates != null) {
+                itemDto.setLastBooking(dates.lastBooking());
+                itemDto.setNextBooking(dates.nextBooking());
+            }
         }
 
         return itemDtos;
@@ -123,10 +189,11 @@ public class ItemServiceImpl implements ItemService {
         if (text == null || text.isBlank()) {
             return List.of();
         }
-        List<Item> items = itemRepository.findByRequest(text);
-        return items.stream()
-                .map(ItemMapper::toItemDto)
-                .toList();
+        return itemSearchIndex.search(text)
+                .orElseGet(() -> itemRepository.findByRequest(text, Limit.of(itemSearchIndex.getMaxResults()))
+                        .stream()
+                        .map(ItemMapper::toItemDto)
+                        .toList());
     }
 
     @Transactional
@@ -139,7 +206,9 @@ public class ItemServiceImpl implements ItemService {
         for (Booking booking : bookings) {
             if (booking.getStatus() == BookingStatus.APPROVED && booking.getEnd().isBefore(LocalDateTime.now())) {
                 Comment comment = CommentMapper.toComment(commentDto.getText(), item, user);
-                return CommentMapper.toCommentDto(commentRepository.save(comment));
+                CommentDto savedComment = CommentMapper.toCommentDto(commentRepository.save(comment));
+                eventPublisher.publishEvent(new ItemChangedEvent(itemId));
+                return savedComment;
             }
         }
 
@@ -156,28 +225,4 @@ public class ItemServiceImpl implements ItemService {
                 .orElseThrow(() -> new NotFoundException("Предмет с таким id не найден"));
     }
 
-    private void setLastAndNextBooking(ItemDto itemDto) {
-        LocalDateTime lastBooking = null;
-        LocalDateTime nextBooking = null;
-
-        LocalDateTime now = LocalDateTime.now();
-        List<Booking> bookings = bookingRepository.findAllByItemIdOrderByStartAsc(itemDto.getId());
-        for (Booking booking : bookings) {
-            if (booking.getStatus() == BookingStatus.REJECTED) {
-                return;
-            }
-            if (booking.getEnd().isBefore(now)) {
-                lastBooking = booking.getStart();
-            }
-
-            if (booking.getStart().isAfter(now)) {
-                nextBooking = booking.getEnd();
-                break;
-            }
-        }
-
-        itemDto.setLastBooking(lastBooking);
-        itemDto.setNextBooking(nextBooking);
-    }
-
 }
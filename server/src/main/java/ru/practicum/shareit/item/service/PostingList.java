@@ -0,0 +1,90 @@
+package ru.practicum.shareit.item.service;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Отсортированный по возрастанию массив id вещей, содержащих триграмму.
+ * Вещи получают id из последовательности, поэтому новая вещь обычно добавляется в конец за O(1),
+ * а пересечение списков идёт слиянием с экспоненциальным поиском без упаковки id в Long.
+ */
+final class PostingList {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int size;
+
+    void add(long id) {
+        if (size > 0 && ids[size - 1] >= id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            insert(-position - 1, id);
+        } else {
+            insert(size, id);
+        }
+    }
+
+    void remove(long id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position < 0) {
+            return;
+        }
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+        if (size > INITIAL_CAPACITY && size < ids.length / 4) {
+            ids = Arrays.copyOf(ids, ids.length / 2);
+        }
+    }
+
+    void removeIf(LongPredicate filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!filter.test(ids[i])) {
+                ids[kept++] = ids[i];
+            }
+        }
+        size = kept;
+        if (size > INITIAL_CAPACITY && size < ids.length / 4) {
+            ids = Arrays.copyOf(ids, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long get(int position) {
+        return ids[position];
+    }
+
+    /**
+     * Возвращает позицию первого id не меньше искомого, начиная с from, или size, если такого нет.
+     */
+    int seek(long id, int from) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < size && ids[high] < id) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        int position = Arrays.binarySearch(ids, low, Math.min(high + 1, size), id);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    private void insert(int position, long id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        ids[position] = id;
+        size++;
+    }
+}
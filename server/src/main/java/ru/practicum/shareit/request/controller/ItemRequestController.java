@@ -1,6 +1,8 @@
 package ru.practicum.shareit.request.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Window;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 import ru.practicum.shareit.request.service.ItemRequestService;
@@ -14,6 +16,7 @@ public class ItemRequestController {
 
     private final ItemRequestService itemRequestService;
     private static final String HEADER_USER_ID = "X-Sharer-User-Id";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     @PostMapping
     public ItemRequestDto addItemRequest(@RequestHeader(HEADER_USER_ID) Long userId,
@@ -22,8 +25,15 @@ public class ItemRequestController {
     }
 
     @GetMapping("/all")
-    public List<ItemRequestDto> getAllRequests(@RequestHeader(HEADER_USER_ID) Long userId) {
-        return itemRequestService.getAllRequests(userId);
+    public ResponseEntity<List<ItemRequestDto>> getAllRequests(@RequestHeader(HEADER_USER_ID) Long userId,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false, defaultValue = "10") int size) {
+        Window<ItemRequestDto> requests = itemRequestService.getAllRequests(userId, cursor, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (requests.hasNext() && !requests.isEmpty()) {
+            response.header(NEXT_CURSOR_HEADER, ItemRequestService.CURSOR.encode(requests.positionAt(requests.size() - 1)));
+        }
+        return response.body(requests.getContent());
     }
 
     @GetMapping
@@ -36,5 +46,4 @@ public class ItemRequestController {
                                          @PathVariable Long requestId) {
         return itemRequestService.getRequestById(userId, requestId);
     }
-
 }
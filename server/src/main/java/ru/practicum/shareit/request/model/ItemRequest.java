@@ -3,6 +3,8 @@ package ru.practicum.shareit.request.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import ru.practicum.shareit.user.model.User;
 
 import java.time.LocalDateTime;
@@ -11,10 +13,12 @@ import java.time.LocalDateTime;
 @Data
 @RequiredArgsConstructor
 @Table(name = "requests")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "requests")
 public class ItemRequest {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "requests_seq")
+    @SequenceGenerator(name = "requests_seq", sequenceName = "requests_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "description", nullable = false)
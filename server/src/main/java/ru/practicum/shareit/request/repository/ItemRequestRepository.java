@@ -1,9 +1,12 @@
 package ru.practicum.shareit.request.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import ru.practicum.shareit.request.model.ItemRequest;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -11,4 +14,10 @@ public interface ItemRequestRepository extends JpaRepository<ItemRequest, Long>
     List<ItemRequest> findAllByRequesterId(Long requesterId);
 
     List<ItemRequest> findAllByRequesterIdOrderByCreatedDesc(Long requesterId);
+
+    @Query("select r from ItemRequest as r where r.requester.id <> :userId " +
+            "and (r.created < :cursorCreated or (r.created = :cursorCreated and r.id < :cursorId)) " +
+            "order by r.created desc, r.id desc")
+    List<ItemRequest> findPageByRequesterIdNot(Long userId, LocalDateTime cursorCreated, Long cursorId,
+                                               Limit limit);
 }
@@ -1,16 +1,19 @@
 package ru.practicum.shareit.request.service;
 
+import org.springframework.data.domain.Window;
+import ru.practicum.shareit.common.KeysetCursor;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 
 import java.util.List;
 
 public interface ItemRequestService {
+    KeysetCursor CURSOR = new KeysetCursor("created");
 
     ItemRequestDto addItemRequest(Long userId, ItemRequestDto itemRequestDto);
 
     List<ItemRequestDto> getAllUserRequests(Long userId);
 
-    List<ItemRequestDto> getAllRequests(Long userId);
+    Window<ItemRequestDto> getAllRequests(Long userId, String cursor, int size);
 
     ItemRequestDto getRequestById(Long userId, Long requestId);
 }
@@ -1,8 +1,12 @@
 package ru.practicum.shareit.request.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.common.KeysetCursor;
 import ru.practicum.shareit.exceptions.NotFoundException;
 import ru.practicum.shareit.item.mapper.ItemMapper;
 import ru.practicum.shareit.item.model.Item;
@@ -13,60 +17,69 @@ import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.request.repository.ItemRequestRepository;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserExistenceIndex;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Service
+@Timed(value = "shareit.service", histogram = true)
 @Transactional(readOnly = true)
 public class ItemRequestServiceImpl implements ItemRequestService {
     private final ItemRequestRepository itemRequestRepository;
     private final UserRepository userRepository;
     private final ItemRepository itemRepository;
+    private final UserExistenceIndex userExistenceIndex;
 
     @Transactional
     @Override
     public ItemRequestDto addItemRequest(Long userId, ItemRequestDto itemRequestDto) {
-        User user = getUser(userId);
+        userExistenceIndex.requireExists(userId);
+        User user = userRepository.getReferenceById(userId);
         ItemRequest itemRequest = ItemRequestMapper.toItemRequest(itemRequestDto, user);
-        itemRequest.setCreated(LocalDateTime.now());
+        // база хранит микросекунды: значение в кэше и в курсоре ленты должно совпадать с сохранённым
+        itemRequest.setCreated(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
         return ItemRequestMapper.toItemRequestDto(itemRequestRepository.save(itemRequest));
     }
 
     @Override
     public List<ItemRequestDto> getAllUserRequests(Long userId) {
-        User user = getUser(userId);
-        List<ItemRequestDto> itemRequestDtos = itemRequestRepository.findAllByRequesterIdOrderByCreatedDesc(user.getId())
+        userExistenceIndex.requireExists(userId);
+        List<ItemRequestDto> itemRequestDtos = itemRequestRepository.findAllByRequesterIdOrderByCreatedDesc(userId)
                 .stream()
                 .map(ItemRequestMapper::toItemRequestDto)
                 .toList();
-        List<Long> itemRequestIds = itemRequestDtos.stream()
-                .map(ItemRequestDto::getId)
-                .toList();
-        Map<Long, List<Item>> itemsMap = itemRepository.findAllByRequestIdIn(itemRequestIds)
-                .stream()
-                .collect(Collectors.groupingBy(o -> o.getRequest().getId()));
-
-        for (ItemRequestDto itemRequestDto : itemRequestDtos) {
-            itemRequestDto.setItems(ItemMapper.toItemResponseDto(itemsMap.getOrDefault(itemRequestDto.getId(), List.of())));
-        }
+        attachItems(itemRequestDtos);
         return itemRequestDtos;
     }
 
+    /**
+     * Лента чужих запросов от новых к старым. Страница читается по ключу (created, id) без OFFSET,
+     * ответы на все запросы страницы загружаются одним запросом.
+     */
     @Override
-    public List<ItemRequestDto> getAllRequests(Long userId) {
-        User user = getUser(userId);
-        return itemRequestRepository.findAll().stream()
+    public Window<ItemRequestDto> getAllRequests(Long userId, String cursor, int size) {
+        userExistenceIndex.requireExists(userId);
+        KeysetCursor.checkPageSize(size);
+        KeysetCursor.Position position = CURSOR.decode(cursor);
+        List<ItemRequest> itemRequests = itemRequestRepository.findPageByRequesterIdNot(userId,
+                position.timestamp(), position.id(), Limit.of(size + 1));
+        List<ItemRequestDto> page = itemRequests.stream()
+                .limit(size)
                 .map(ItemRequestMapper::toItemRequestDto)
                 .toList();
+        attachItems(page);
+        return Window.from(page, index -> CURSOR.positionOf(page.get(index).getCreated(),
+                page.get(index).getId()), itemRequests.size() > size);
     }
 
     @Override
     public ItemRequestDto getRequestById(Long userId, Long requestId) {
-        getUser(userId);
+        userExistenceIndex.requireExists(userId);
         ItemRequest itemRequest = itemRequestRepository.findById(requestId)
                 .orElseThrow(() -> new NotFoundException("Запрос с таким id не найден"));
 
@@ -77,8 +90,19 @@ public class ItemRequestServiceImpl implements ItemRequestService {
         return itemRequestDto;
     }
 
-    private User getUser(Long userId) {
-        return userRepository.findById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с таким id не найден"));
+    private void attachItems(List<ItemRequestDto> itemRequestDtos) {
+        if (itemRequestDtos.isEmpty()) {
+            return;
+        }
+        List<Long> itemRequestIds = itemRequestDtos.stream()
+                .map(ItemRequestDto::getId)
+                .toList();
+        Map<Long, List<Item>> itemsMap = itemRepository.findAllByRequestIdIn(itemRequestIds)
+                .stream()
+                .collect(Collectors.groupingBy(o -> o.getRequest().getId()));
+
+        for (ItemRequestDto itemRequestDto : itemRequestDtos) {
+            itemRequestDto.setItems(ItemMapper.toItemResponseDto(itemsMap.getOrDefault(itemRequestDto.getId(), List.of())));
+        }
     }
 }
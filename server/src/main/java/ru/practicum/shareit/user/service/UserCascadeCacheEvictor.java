@@ -0,0 +1,26 @@
+package ru.practicum.shareit.user.service;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.model.ItemRequest;
+
+/**
+ * Вещи и запросы удалённого пользователя база удаляет каскадно в обход Hibernate,
+ * поэтому после коммита их регионы кэша второго уровня сбрасываются целиком.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCascadeCacheEvictor {
+    private final EntityManagerFactory entityManagerFactory;
+
+    @TransactionalEventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        Cache cache = entityManagerFactory.getCache();
+        cache.evict(Item.class);
+        cache.evict(ItemRequest.class);
+    }
+}
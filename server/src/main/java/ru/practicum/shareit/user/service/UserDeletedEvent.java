@@ -0,0 +1,7 @@
+package ru.practicum.shareit.user.service;
+
+/**
+ * Событие удаления пользователя вместе с его вещами и запросами.
+ */
+public record UserDeletedEvent(Long userId) {
+}
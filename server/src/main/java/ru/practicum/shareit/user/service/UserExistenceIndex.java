@@ -0,0 +1,97 @@
+package ru.practicum.shareit.user.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.shareit.common.TransactionCallbacks;
+import ru.practicum.shareit.exceptions.NotFoundException;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.Duration;
+
+/**
+ * Ограниченное множество id существующих пользователей для проверки без загрузки сущности.
+ * Изменения применяются сразу и откатываются вместе с транзакцией.
+ * При промахе выполняется existsById, и найденный id возвращается в множество.
+ * Через shareit.users.existence.refresh-interval после записи id при следующем обращении перепроверяется
+ * в фоне, а до конца проверки ответ даётся по множеству. Так прогретые при старте id не требуют запроса
+ * в потоке обработки, а удаление пользователя в обход этого экземпляра (другой экземпляр сервера, ручной SQL)
+ * может быть пропущено ещё одним обращением после интервала, пока фоновая проверка не уберёт id.
+ */
+@Component
+public class UserExistenceIndex {
+    private final UserRepository userRepository;
+    private final int maxSize;
+    private final LoadingCache<Long, Boolean> knownIds;
+    private final Counter fallbackFound;
+    private final Counter fallbackMissing;
+
+    @Autowired
+    public UserExistenceIndex(UserRepository userRepository, MeterRegistry meterRegistry,
+                              @Value("${shareit.users.existence.max-size:100000}") int maxSize,
+                              @Value("${shareit.users.existence.refresh-interval:30s}") Duration refreshInterval) {
+        this.userRepository = userRepository;
+        this.maxSize = maxSize;
+        this.knownIds = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(refreshInterval)
+                .build(userId -> userRepository.existsById(userId) ? Boolean.TRUE : null);
+        this.fallbackFound = fallbackCounter(meterRegistry, "found");
+        this.fallbackMissing = fallbackCounter(meterRegistry, "missing");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        for (Long userId : userRepository.findRecentIds(Limit.of(maxSize))) {
+            knownIds.put(userId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @throws NotFoundException если пользователя с таким id нет
+     */
+    public void requireExists(Long userId) {
+        if (knownIds.getIfPresent(userId) != null) {
+            return;
+        }
+        if (!userRepository.existsById(userId)) {
+            fallbackMissing.increment();
+            throw new NotFoundException("Пользователь с таким id не найден");
+        }
+        fallbackFound.increment();
+        knownIds.put(userId, Boolean.TRUE);
+    }
+
+    public void add(Long userId) {
+        knownIds.put(userId, Boolean.TRUE);
+        TransactionCallbacks.afterRollback(() -> knownIds.invalidate(userId));
+    }
+
+    public void remove(Long userId) {
+        knownIds.invalidate(userId);
+        TransactionCallbacks.afterRollback(() -> knownIds.put(userId, Boolean.TRUE));
+    }
+
+    /**
+     * Параллельный промах мог вернуть id до фиксации удаления, поэтому после коммита он убирается ещё раз.
+     */
+    @TransactionalEventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        knownIds.invalidate(event.userId());
+    }
+
+    private static Counter fallbackCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("users.existence.fallback")
+                .description("Проверки существования пользователя, выполненные через базу")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
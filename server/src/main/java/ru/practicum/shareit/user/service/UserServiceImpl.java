@@ -1,18 +1,35 @@
 package ru.practicum.shareit.user.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.service.BookingAvailabilityIndex;
 import ru.practicum.shareit.exceptions.NotFoundException;
+import ru.practicum.shareit.item.repository.CommentRepository;
+import ru.practicum.shareit.item.service.ItemChangedEvent;
+import ru.practicum.shareit.item.service.ItemSearchIndex;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.mapper.UserMapper;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
 @RequiredArgsConstructor
 @Service
+@Timed(value = "shareit.service", histogram = true)
 public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
+    private final CommentRepository commentRepository;
+    private final BookingAvailabilityIndex bookingAvailabilityIndex;
+    private final ItemSearchIndex itemSearchIndex;
+    private final UserExistenceIndex userExistenceIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public UserDto getUser(Long userId) {
@@ -24,25 +41,42 @@ public class UserServiceImpl implements UserService {
     @Transactional
     public UserDto createUser(UserDto userDto) {
         User user = UserMapper.toUser(userDto);
-        userRepository.save(user);
+        userRepository.saveAndFlush(user);
+        userExistenceIndex.add(user.getId());
         return UserMapper.toUserDto(user);
     }
 
     @Override
     @Transactional
     public UserDto updateUser(Long userId, UserDto userDto) {
-        User user = UserMapper.toUser(findUser(userId));
+        UserDto existingUser = findUser(userId);
+        User user = UserMapper.toUser(existingUser);
 
         if (userDto.getName() != null) user.setName(userDto.getName());
         if (userDto.getEmail() != null) user.setEmail(userDto.getEmail());
 
-        return UserMapper.toUserDto(userRepository.save(user));
+        UserDto updatedUser = UserMapper.toUserDto(userRepository.save(user));
+        if (!Objects.equals(existingUser.getName(), updatedUser.getName())) {
+            // имя автора входит в комментарии закэшированных вещей
+            List<Long> commentedItemIds = commentRepository.findItemIdsByAuthorId(userId);
+            if (!commentedItemIds.isEmpty()) {
+                eventPublisher.publishEvent(new ItemChangedEvent(commentedItemIds));
+            }
+        }
+        return updatedUser;
     }
 
     @Override
     @Transactional
     public void deleteUser(Long userId) {
+        bookingAvailabilityIndex.removeUser(userId);
+        // каскадно удаляются вещи пользователя, ответы на его запросы и его комментарии к чужим вещам
+        Set<Long> changedItemIds = new HashSet<>(itemSearchIndex.removeUser(userId));
+        changedItemIds.addAll(commentRepository.findItemIdsByAuthorId(userId));
         userRepository.deleteById(userId);
+        userExistenceIndex.remove(userId);
+        eventPublisher.publishEvent(new ItemChangedEvent(changedItemIds));
+        eventPublisher.publishEvent(new UserDeletedEvent(userId));
     }
 
     private UserDto findUser(Long userId) {
@@ -4,13 +4,8 @@ DELETE FROM requests;
 DELETE FROM items;
 DELETE FROM users;
 
-ALTER TABLE users
-    ALTER COLUMN id RESTART WITH 1;
-ALTER TABLE requests
-    ALTER COLUMN id RESTART WITH 1;
-ALTER TABLE items
-    ALTER COLUMN id RESTART WITH 1;
-ALTER TABLE bookings
-    ALTER COLUMN id RESTART WITH 1;
-ALTER TABLE comments
-    ALTER COLUMN id RESTART WITH 1;
\ No newline at end of file
+ALTER SEQUENCE users_seq RESTART WITH 1;
+ALTER SEQUENCE requests_seq RESTART WITH 1;
+ALTER SEQUENCE items_seq RESTART WITH 1;
+ALTER SEQUENCE bookings_seq RESTART WITH 1;
+ALTER SEQUENCE comments_seq RESTART WITH 1;
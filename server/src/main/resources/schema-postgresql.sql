@@ -0,0 +1,19 @@
+SELECT setval('users_seq', m.max_id)
+FROM (SELECT MAX(id) AS max_id FROM users) AS m
+WHERE m.max_id >= (SELECT last_value FROM users_seq);
+
+SELECT setval('requests_seq', m.max_id)
+FROM (SELECT MAX(id) AS max_id FROM requests) AS m
+WHERE m.max_id >= (SELECT last_value FROM requests_seq);
+
+SELECT setval('items_seq', m.max_id)
+FROM (SELECT MAX(id) AS max_id FROM items) AS m
+WHERE m.max_id >= (SELECT last_value FROM items_seq);
+
+SELECT setval('bookings_seq', m.max_id)
+FROM (SELECT MAX(id) AS max_id FROM bookings) AS m
+WHERE m.max_id >= (SELECT last_value FROM bookings_seq);
+
+SELECT setval('comments_seq', m.max_id)
+FROM (SELECT MAX(id) AS max_id FROM comments) AS m
+WHERE m.max_id >= (SELECT last_value FROM comments_seq);
@@ -1,3 +1,13 @@
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE IF NOT EXISTS requests_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE IF NOT EXISTS items_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE IF NOT EXISTS bookings_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE IF NOT EXISTS comments_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS users (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
     name VARCHAR(255)                          NOT NULL,
@@ -22,6 +32,7 @@ CREATE TABLE IF NOT EXISTS items (
     is_available BOOLEAN,
     request_id BIGINT,
     owner_id BIGINT,
+    updated_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
     CONSTRAINT pk_item PRIMARY KEY (id),
     CONSTRAINT fk_item_request FOREIGN KEY (request_id) REFERENCES requests (id) ON DELETE CASCADE,
     CONSTRAINT fk_item_owner FOREIGN KEY (owner_id) REFERENCES users (id) ON DELETE CASCADE
@@ -34,6 +45,8 @@ CREATE TABLE IF NOT EXISTS bookings (
     item_id BIGINT                             NOT NULL,
     booker_id BIGINT                           NOT NULL,
     status VARCHAR(255)                        NOT NULL,
+    version BIGINT DEFAULT 0                   NOT NULL,
+    updated_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
     CONSTRAINT pk_booking PRIMARY KEY (id),
     CONSTRAINT fk_item_booking FOREIGN KEY (item_id) REFERENCES items (id) ON DELETE CASCADE,
     CONSTRAINT fk_user_booking FOREIGN KEY (booker_id) REFERENCES users (id) ON DELETE CASCADE
@@ -49,3 +62,23 @@ CREATE TABLE IF NOT EXISTS comments (
     CONSTRAINT fk_comment_item FOREIGN KEY (item_id) REFERENCES items (id) ON DELETE CASCADE,
     CONSTRAINT fk_comment_user FOREIGN KEY (author_id) REFERENCES users (id) ON DELETE CASCADE
 );
+
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL;
+
+ALTER TABLE items ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL;
+
+CREATE INDEX IF NOT EXISTS ix_item_owner ON items (owner_id);
+
+CREATE INDEX IF NOT EXISTS ix_request_created ON requests (created DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS ix_booking_booker_start ON bookings (booker_id, start_time DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS ix_booking_item_start ON bookings (item_id, start_time DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS ix_booking_status_end ON bookings (status, end_time);
+
+CREATE INDEX IF NOT EXISTS ix_booking_status_updated ON bookings (status, updated_at);
+
+CREATE INDEX IF NOT EXISTS ix_item_updated ON items (updated_at);
@@ -0,0 +1,137 @@
+package ru.practicum.shareit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Сравнивает массовую вставку пользователей так, как её выполняет Hibernate: с IDENTITY каждая строка
+ * отдельным запросом с возвратом ключа, с пуловой последовательностью — один nextval на 50 строк и пакет из 50 строк.
+ * Запускается профилем benchmark, PostgreSQL поднимается в Docker.
+ */
+@Tag("benchmark")
+class BulkInsertBenchmarkTest {
+    private static final int ROWS = 20_000;
+    private static final int BATCH_SIZE = 50;
+    private static final int ROUNDS = 3;
+
+    @Test
+    void h2() throws SQLException {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:bulk-insert;DB_CLOSE_DELAY=-1", "sa", "");
+        compare("H2", dataSource, "SELECT NEXT VALUE FOR users_seq", false);
+    }
+
+    @Test
+    void postgresql() throws SQLException {
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker недоступен");
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16.1")) {
+            postgres.start();
+            DataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(),
+                    postgres.getPassword());
+            compare("PostgreSQL", dataSource, "SELECT nextval('users_seq')", true);
+        }
+    }
+
+    /**
+     * @param expectGain проверять выигрыш: у H2 в памяти процесса нет сетевых обходов, и разница там в пределах шума
+     */
+    private static void compare(String database, DataSource dataSource, String nextValue, boolean expectGain)
+            throws SQLException {
+        DatabaseInitializationSettings settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(List.of("classpath:schema.sql"));
+        new SqlDataSourceScriptDatabaseInitializer(dataSource, settings).initializeDatabase();
+
+        long identity = Long.MAX_VALUE;
+        long sequence = Long.MAX_VALUE;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            for (int round = 0; round <= ROUNDS; round++) {
+                long identityNanos = insertWithIdentity(connection, round);
+                long sequenceNanos = insertWithSequence(connection, nextValue, round);
+                if (round > 0) {
+                    identity = Math.min(identity, identityNanos);
+                    sequence = Math.min(sequence, sequenceNanos);
+                }
+            }
+        }
+        System.out.printf("%s, %d строк: IDENTITY %.0f строк/с, последовательность и пакеты %.0f строк/с%n",
+                database, ROWS, rowsPerSecond(identity), rowsPerSecond(sequence));
+        if (expectGain) {
+            assertTrue(sequence < identity, database + ": пакетная вставка не быстрее построчной");
+        }
+    }
+
+    private static long insertWithIdentity(Connection connection, int round) throws SQLException {
+        long startedAt = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO users (name, email) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < ROWS; i++) {
+                insert.setString(1, "user" + i);
+                insert.setString(2, "identity" + round + "-" + i + "@example.com");
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                }
+            }
+        }
+        connection.commit();
+        long elapsed = System.nanoTime() - startedAt;
+        clear(connection);
+        return elapsed;
+    }
+
+    private static long insertWithSequence(Connection connection, String nextValue, int round) throws SQLException {
+        long startedAt = System.nanoTime();
+        try (PreparedStatement next = connection.prepareStatement(nextValue);
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO users (id, name, email) VALUES (?, ?, ?)")) {
+            long id = 0;
+            for (int i = 0; i < ROWS; i++) {
+                if (i % BATCH_SIZE == 0) {
+                    try (ResultSet value = next.executeQuery()) {
+                        value.next();
+                        id = value.getLong(1);
+                    }
+                }
+                insert.setLong(1, id++);
+                insert.setString(2, "user" + i);
+                insert.setString(3, "sequence" + round + "-" + i + "@example.com");
+                insert.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        long elapsed = System.nanoTime() - startedAt;
+        clear(connection);
+        return elapsed;
+    }
+
+    private static void clear(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM users");
+        }
+        connection.commit();
+    }
+
+    private static double rowsPerSecond(long nanos) {
+        return ROWS * 1_000_000_000.0 / nanos;
+    }
+}
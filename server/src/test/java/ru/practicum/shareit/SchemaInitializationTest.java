@@ -0,0 +1,104 @@
+package ru.practicum.shareit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Проверяет порядок скриптов инициализации для PostgreSQL: сначала schema.sql создаёт таблицы и последовательности,
+ * затем schema-postgresql.sql подтягивает последовательности к MAX(id), а data.sql очищает таблицы
+ * и сбрасывает последовательности. Тестовый профиль работает на H2
+ * и PostgreSQL-скрипт не выполняет, поэтому настройки читаются из основного раздела application.properties.
+ */
+class SchemaInitializationTest {
+
+    @Test
+    void postgresqlScriptRunsAfterSchema() throws IOException {
+        assertEquals(List.of("classpath:schema.sql", "optional:classpath:schema-postgresql.sql"),
+                postgresqlSettings().getSchemaLocations());
+    }
+
+    @Test
+    void dataScriptResetsSequencesOnBoot() {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:schema-initialization;DB_CLOSE_DELAY=-1",
+                "sa", "");
+        DatabaseInitializationSettings settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(List.of("classpath:schema.sql"));
+        settings.setDataLocations(List.of("classpath:data.sql"));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        new SqlDataSourceScriptDatabaseInitializer(dataSource, settings).initializeDatabase();
+        jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR users_seq", Long.class);
+        jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR users_seq", Long.class);
+        new SqlDataSourceScriptDatabaseInitializer(dataSource, settings).initializeDatabase();
+
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR users_seq", Long.class));
+    }
+
+    @Test
+    void postgresqlScriptsInitializeFreshAndExistingDatabase() throws IOException {
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker недоступен");
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16.1")) {
+            postgres.start();
+            DataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(),
+                    postgres.getPassword());
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+            initialize(dataSource, false);
+            jdbcTemplate.update("INSERT INTO users (id, name, email) VALUES (1000, 'user', 'user@example.com')");
+            initialize(dataSource, false);
+
+            Long next = jdbcTemplate.queryForObject("SELECT nextval('users_seq')", Long.class);
+            assertTrue(next > 1000, "Последовательность не подтянута к MAX(id): " + next);
+
+            initialize(dataSource, true);
+
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+            assertEquals(1L, jdbcTemplate.queryForObject("SELECT nextval('users_seq')", Long.class));
+        }
+    }
+
+    /**
+     * @param withData выполнить и data.sql, который очищает таблицы и сбрасывает последовательности при старте
+     */
+    private static void initialize(DataSource dataSource, boolean withData) throws IOException {
+        DatabaseInitializationSettings settings = postgresqlSettings();
+        if (!withData) {
+            settings.setDataLocations(List.of());
+        }
+        new SqlDataSourceScriptDatabaseInitializer(dataSource, settings).initializeDatabase();
+    }
+
+    private static DatabaseInitializationSettings postgresqlSettings() throws IOException {
+        List<PropertySource<?>> documents = new PropertiesPropertySourceLoader()
+                .load("application", new ClassPathResource("application.properties"));
+        StandardEnvironment environment = new StandardEnvironment();
+        MutablePropertySources sources = environment.getPropertySources();
+        sources.addFirst(documents.get(0));
+        sources.addFirst(documents.get(1));
+        SqlInitializationProperties properties = Binder.get(environment)
+                .bind("spring.sql.init", SqlInitializationProperties.class)
+                .orElseThrow(IllegalStateException::new);
+        assertEquals("postgresql", properties.getPlatform());
+        return SqlDataSourceScriptDatabaseInitializer.getSettings(properties);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.service.BookingAvailabilityIndex;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнивает проверку занятости вещи через индекс подтверждённых бронирований и запросом к базе
+ * при 10 тысячах, 100 тысячах и миллионе бронирований одной вещи. Запускается профилем benchmark;
+ * для миллиона бронирований нужна куча около 3 ГБ (-DargLine=-Xmx3g).
+ */
+@Tag("benchmark")
+@SpringBootTest
+class BookingAvailabilityBenchmarkTest {
+    private static final int BATCH_SIZE = 10_000;
+    private static final int INDEX_CHECKS = 100_000;
+    private static final int DATABASE_CHECKS = 200;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private BookingAvailabilityIndex bookingAvailabilityIndex;
+
+    private User user;
+
+    @AfterEach
+    void tearDown() {
+        if (user != null) {
+            userRepository.delete(user);
+        }
+        bookingAvailabilityIndex.reconcileAll();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 1_000_000})
+    void indexAgainstDatabase(int bookings) {
+        user = new User();
+        user.setName("Name");
+        user.setEmail("benchmark" + bookings + "@mail.ru");
+        userRepository.save(user);
+        Item item = new Item();
+        item.setName("Name");
+        item.setDescription("Description");
+        item.setAvailable(true);
+        item.setOwner(user);
+        itemRepository.save(item);
+        LocalDateTime from = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1);
+        insertApproved(item.getId(), from, bookings);
+
+        long startedAt = System.nanoTime();
+        bookingAvailabilityIndex.reconcileAll();
+        Duration load = Duration.ofNanos(System.nanoTime() - startedAt);
+
+        BookingAvailabilityIndex databaseCheck = new BookingAvailabilityIndex(bookingRepository, true, Duration.ZERO,
+                new SimpleMeterRegistry());
+        long index = nanosPerCheck(bookingAvailabilityIndex, item.getId(), from, bookings, INDEX_CHECKS);
+        long database = nanosPerCheck(databaseCheck, item.getId(), from, bookings, DATABASE_CHECKS);
+
+        System.out.printf("Бронирований вещи: %d, загрузка индекса %d мс, проверка индексом %d нс, базой %d нс%n",
+                bookings, load.toMillis(), index, database);
+    }
+
+    /**
+     * Вставляет часовые бронирования через час друг от друга, начиная с from.
+     */
+    private void insertApproved(Long itemId, LocalDateTime from, int bookings) {
+        for (int offset = 0; offset < bookings; offset += BATCH_SIZE) {
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = offset; i < Math.min(bookings, offset + BATCH_SIZE); i++) {
+                LocalDateTime start = from.plusHours(2L * i);
+                rows.add(new Object[]{Timestamp.valueOf(start), Timestamp.valueOf(start.plusHours(1)), itemId,
+                        user.getId(), BookingStatus.APPROVED.name()});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO bookings (start_time, end_time, item_id, booker_id, status) " +
+                    "VALUES (?, ?, ?, ?, ?)", rows);
+        }
+    }
+
+    /**
+     * Проверяет случайные часовые интервалы, половина из которых пересекается с бронированием,
+     * и возвращает среднее время одной проверки.
+     */
+    private static long nanosPerCheck(BookingAvailabilityIndex index, Long itemId, LocalDateTime from,
+                                      int bookings, int checks) {
+        Random random = new Random(42);
+        int occupied = 0;
+        int expected = 0;
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < checks; i++) {
+            long slot = random.nextInt(bookings * 2);
+            LocalDateTime start = from.plusHours(slot).plusMinutes(20);
+            if (slot % 2 == 0) {
+                expected++;
+            }
+            if (index.isOccupied(itemId, start, start.plusMinutes(20))) {
+                occupied++;
+            }
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        assertEquals(expected, occupied);
+        return elapsed / checks;
+    }
+}
@@ -7,13 +7,18 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.practicum.shareit.booking.controller.BookingController;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingNewDto;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.exceptions.NotFoundException;
 import ru.practicum.shareit.booking.repository.BookingRepository;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.model.Item;
@@ -22,6 +27,7 @@ import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
@@ -30,6 +36,7 @@ import java.util.List;
 import java.util.Random;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -127,8 +134,8 @@ public class BookingControllerTest {
                 .id(1L)
                 .start(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).plusMinutes(1))
                 .end(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).plusDays(1))
-                .item(item)
-                .booker(user)
+                .item(new BookingDto.BookedItem(item.getId(), item.getName()))
+                .booker(new BookingDto.Booker(user.getId(), user.getName()))
                 .status(BookingStatus.WAITING)
                 .build();
 
@@ -143,7 +150,7 @@ public class BookingControllerTest {
         createBookingDto = new BookingNewDto();
         createBookingDto.setStart(bookingDto.getStart());
         createBookingDto.setEnd(bookingDto.getEnd());
-        createBookingDto.setItemId(bookingDto.getItem().getId());
+        createBookingDto.setItemId(bookingDto.getItem().id());
 
         bookingDtoList = new ArrayList<>();
         for (long i = 1; i <= ENTITIES_COUNT; i++) {
@@ -151,8 +158,8 @@ public class BookingControllerTest {
                     .id(i)
                     .start(LocalDateTime.now().plusMinutes(1))
                     .end(LocalDateTime.now().plusDays(1))
-                    .item(item)
-                    .booker(user)
+                    .item(new BookingDto.BookedItem(item.getId(), item.getName()))
+                    .booker(new BookingDto.Booker(user.getId(), user.getName()))
                     .status(BookingStatus.WAITING)
                     .build());
         }
@@ -191,7 +198,7 @@ public class BookingControllerTest {
         mvc.perform(patch("/bookings/" + bookingDto.getId())
                         .accept(MediaType.APPLICATION_JSON)
                         .param("approved", "true")
-                        .header("X-Sharer-User-Id", bookingDto.getBooker().getId()))
+                        .header("X-Sharer-User-Id", bookingDto.getBooker().id()))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id", is(bookingDto.getId()), Long.class))
@@ -200,6 +207,28 @@ public class BookingControllerTest {
         verify(bookingService, times(1)).updateBooking(eq(bookingId), eq(userId), eq(approved));
     }
 
+    @Test
+    void decideBookingsTest() throws Exception {
+        List<BookingDecisionDto> decisions = List.of(new BookingDecisionDto(1L, true), new BookingDecisionDto(2L, false));
+        when(bookingService.decideBookings(anyLong(), anyList()))
+                .thenReturn(List.of(BookingDecisionResultDto.decided(1L, BookingStatus.APPROVED),
+                        BookingDecisionResultDto.failed(2L, "Бронирование уже подтверждено")));
+
+        mvc.perform(patch("/bookings/batch")
+                        .content(objectMapper.writeValueAsString(decisions))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-Sharer-User-Id", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].status", is(BookingStatus.APPROVED.name())))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].error", is("Бронирование уже подтверждено")))
+                .andExpect(jsonPath("$[1].status").doesNotExist());
+
+        verify(bookingService, times(1)).decideBookings(eq(1L), eq(decisions));
+    }
+
     @Test
     void getBookingByIdTest() throws Exception {
         when(bookingService.findBookingByIdAndBookerIdOrOwnerId(anyLong(), anyLong()))
@@ -207,48 +236,81 @@ public class BookingControllerTest {
 
         mvc.perform(get("/bookings/" + bookingDto.getId())
                         .accept(MediaType.APPLICATION_JSON)
-                        .header("X-Sharer-User-Id", bookingDto.getBooker().getId()))
+                        .header("X-Sharer-User-Id", bookingDto.getBooker().id()))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id", is(bookingDto.getId()), Long.class));
 
-        verify(bookingService, times(1)).findBookingByIdAndBookerIdOrOwnerId(eq(bookingDto.getId()), eq(bookingDto.getBooker().getId()));
+        verify(bookingService, times(1)).findBookingByIdAndBookerIdOrOwnerId(eq(bookingDto.getId()), eq(bookingDto.getBooker().id()));
     }
 
     @Test
     void getAllUsersBookingByStatusTest() throws Exception {
         Long userId = 1L;
 
-        when(bookingService.findBookingsByState(Mockito.anyLong(), Mockito.any()))
-                .thenReturn(bookingDtoList);
+        when(bookingService.findBookingsByState(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.anyInt()))
+                .thenReturn(Window.from(bookingDtoList, ScrollPosition::offset));
 
         mvc.perform(get("/bookings")
                         .accept(MediaType.APPLICATION_JSON)
-                        .header("X-Sharer-User-Id", bookingDto.getBooker().getId()))
+                        .header("X-Sharer-User-Id", bookingDto.getBooker().id()))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$", hasSize(bookingDtoList.size())))
                 .andExpect(jsonPath("$[0].id", is(bookingDtoList.getFirst().getId().intValue())));
 
-        verify(bookingService, times(1)).findBookingsByState(eq(userId), eq(BookingState.ALL));
+        verify(bookingService, times(1)).findBookingsByState(eq(userId), eq(BookingState.ALL), isNull(), eq(10));
     }
 
     @Test
     void getAllBookingForUserItemsByStatusTest() throws Exception {
         Long userId = 1L;
 
-        when(bookingService.findBookingsByOwnerId(anyLong(), any()))
-                .thenReturn(bookingDtoList);
+        when(bookingService.findBookingsByOwnerId(anyLong(), any(), any(), anyInt()))
+                .thenReturn(Window.from(bookingDtoList, ScrollPosition::offset));
 
         mvc.perform(get("/bookings/owner")
                         .accept(MediaType.APPLICATION_JSON)
-                        .header("X-Sharer-User-Id", bookingDto.getBooker().getId()))
+                        .header("X-Sharer-User-Id", bookingDto.getBooker().id()))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.size()", is(bookingDtoList.size())))
                 .andExpect(jsonPath("$[0].id", is(bookingDtoList.getFirst().getId().intValue())));
 
-        verify(bookingService, times(1)).findBookingsByOwnerId(eq(userId), eq(BookingState.ALL));
+        verify(bookingService, times(1)).findBookingsByOwnerId(eq(userId), eq(BookingState.ALL), isNull(), eq(10));
+    }
+
+    @Test
+    void exportBookingsByOwnerTest() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream output = invocation.getArgument(1);
+            for (BookingDto booking : bookingDtoList) {
+                output.write(objectMapper.writeValueAsBytes(booking));
+                output.write('\n');
+            }
+            return null;
+        }).when(bookingService).exportBookingsByOwnerId(eq(1L), any());
+
+        String body = mvc.perform(get("/bookings/owner/export")
+                        .header("X-Sharer-User-Id", 1L))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        List<String> lines = body.lines().toList();
+        assertEquals(bookingDtoList.size(), lines.size());
+        assertEquals(bookingDtoList.getFirst().getId(), objectMapper.readValue(lines.getFirst(), BookingDto.class).getId());
+    }
+
+    @Test
+    void exportBookingsByNonExistingOwnerTest() throws Exception {
+        doThrow(new NotFoundException("Пользователь с таким id не найден"))
+                .when(bookingService).exportBookingsByOwnerId(eq(99L), any());
+
+        mvc.perform(get("/bookings/owner/export")
+                        .header("X-Sharer-User-Id", 99L))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
     }
 
     private String generateRandomString(int targetStringLength) {
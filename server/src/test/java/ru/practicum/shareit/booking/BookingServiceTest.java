@@ -1,25 +1,58 @@
 package ru.practicum.shareit.booking;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Window;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingIntervalDto;
 import ru.practicum.shareit.booking.dto.BookingNewDto;
+import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.service.BookingAvailabilityIndex;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.common.KeysetCursor;
+import ru.practicum.shareit.common.StatementCounter;
 import ru.practicum.shareit.exceptions.NotFoundException;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserExistenceIndex;
+import ru.practicum.shareit.user.service.UserService;
 
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,6 +69,20 @@ public class BookingServiceTest {
     private UserRepository userRepository;
     @Autowired
     private ItemRepository itemRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private UserExistenceIndex userExistenceIndex;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private StatementCounter statementCounter;
+    @Autowired
+    private BookingAvailabilityIndex bookingAvailabilityIndex;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     private User user;
     private Item item;
@@ -67,15 +114,15 @@ public class BookingServiceTest {
 
         bookingNewDto = new BookingNewDto();
         bookingNewDto.setItemId(itemId);
-        bookingNewDto.setStart(LocalDateTime.now().plusHours(1));
-        bookingNewDto.setEnd(LocalDateTime.now().plusHours(2));
+        bookingNewDto.setStart(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).plusHours(1));
+        bookingNewDto.setEnd(bookingNewDto.getStart().plusHours(1));
 
         bookingDto = bookingDto.builder()
                 .id(1L)
                 .start(bookingNewDto.getStart())
                 .end(bookingNewDto.getEnd())
-                .item(item)
-                .booker(user)
+                .item(new BookingDto.BookedItem(item.getId(), item.getName()))
+                .booker(new BookingDto.Booker(user.getId(), user.getName()))
                 .status(BookingStatus.WAITING)
                 .build();
     }
@@ -86,8 +133,8 @@ public class BookingServiceTest {
         assertNotNull(bookingDto);
         assertEquals(bookingNewDto.getStart(), bookingDto.getStart());
         assertEquals(bookingNewDto.getEnd(), bookingDto.getEnd());
-        assertEquals(itemId, bookingDto.getItem().getId());
-        assertEquals(userId, bookingDto.getBooker().getId());
+        assertEquals(itemId, bookingDto.getItem().id());
+        assertEquals(userId, bookingDto.getBooker().id());
     }
 
     @Test
@@ -98,34 +145,63 @@ public class BookingServiceTest {
         assertEquals(bookingDto.getId(), bookingDtoById.getId());
         assertEquals(bookingDto.getStart(), bookingDtoById.getStart());
         assertEquals(bookingDto.getEnd(), bookingDtoById.getEnd());
-        assertEquals(bookingDto.getItem().getId(), bookingDtoById.getItem().getId());
-        assertEquals(bookingDto.getBooker().getId(), bookingDtoById.getBooker().getId());
+        assertEquals(bookingDto.getItem().id(), bookingDtoById.getItem().id());
+        assertEquals(bookingDto.getBooker().id(), bookingDtoById.getBooker().id());
     }
 
     @Test
     void findBookingsByBookerId() {
         BookingDto bookingDto = bookingService.createBooking(userId, bookingNewDto);
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId, BookingState.ALL);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId, BookingState.ALL, null, 10).getContent();
         assertNotNull(bookingDtoList);
         assertEquals(1, bookingDtoList.size());
         assertEquals(bookingDto.getId(), bookingDtoList.getFirst().getId());
         assertEquals(bookingDto.getStart(), bookingDtoList.getFirst().getStart());
         assertEquals(bookingDto.getEnd(), bookingDtoList.getFirst().getEnd());
-        assertEquals(bookingDto.getItem().getId(), bookingDtoList.getFirst().getItem().getId());
-        assertEquals(bookingDto.getBooker().getId(), bookingDtoList.getFirst().getBooker().getId());
+        assertEquals(bookingDto.getItem().id(), bookingDtoList.getFirst().getItem().id());
+        assertEquals(bookingDto.getBooker().id(), bookingDtoList.getFirst().getBooker().id());
     }
 
     @Test
     void findBookingsByOwnerId() {
         BookingDto bookingDto = bookingService.createBooking(userId, bookingNewDto);
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.ALL);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.ALL, null, 10).getContent();
         assertNotNull(bookingDtoList);
         assertEquals(1, bookingDtoList.size());
         assertEquals(bookingDto.getId(), bookingDtoList.getFirst().getId());
         assertEquals(bookingDto.getStart(), bookingDtoList.getFirst().getStart());
         assertEquals(bookingDto.getEnd(), bookingDtoList.getFirst().getEnd());
-        assertEquals(bookingDto.getItem().getId(), bookingDtoList.getFirst().getItem().getId());
-        assertEquals(bookingDto.getBooker().getId(), bookingDtoList.getFirst().getBooker().getId());
+        assertEquals(bookingDto.getItem().id(), bookingDtoList.getFirst().getItem().id());
+        assertEquals(bookingDto.getBooker().id(), bookingDtoList.getFirst().getBooker().id());
+    }
+
+    @Test
+    void exportBookingsByOwnerId() throws IOException {
+        List<Long> createdIds = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            BookingNewDto newBooking = new BookingNewDto();
+            newBooking.setItemId(itemId);
+            newBooking.setStart(bookingNewDto.getStart().plusDays(i));
+            newBooking.setEnd(newBooking.getStart().plusHours(1));
+            createdIds.addFirst(bookingService.createBooking(userId, newBooking).getId());
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        bookingService.exportBookingsByOwnerId(userId, output);
+
+        List<BookingDto> exported = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            exported.add(objectMapper.readValue(line, BookingDto.class));
+        }
+        assertEquals(createdIds, exported.stream().map(BookingDto::getId).toList());
+        assertEquals(item.getName(), exported.getFirst().getItem().name());
+        assertEquals(user.getName(), exported.getFirst().getBooker().name());
+    }
+
+    @Test
+    void exportBookingsByNonExistingOwner() {
+        assertThrows(NotFoundException.class,
+                () -> bookingService.exportBookingsByOwnerId(-1L, new ByteArrayOutputStream()));
     }
 
     @Test
@@ -159,7 +235,7 @@ public class BookingServiceTest {
 
         bookingService.updateBooking(userId, currentBookingId, true);
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.CURRENT);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.CURRENT, null, 10).getContent();
         assertNotNull(bookingDtoList);
         assertEquals(1, bookingDtoList.size());
         assertEquals(currentBookingId, bookingDtoList.getFirst().getId());
@@ -196,7 +272,7 @@ public class BookingServiceTest {
 
         bookingService.updateBooking(userId, futureBookingId, true);
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.FUTURE);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.FUTURE, null, 10).getContent();
         assertNotNull(bookingDtoList);
         assertEquals(1, bookingDtoList.size());
         assertEquals(futureBookingId, bookingDtoList.getFirst().getId());
@@ -233,7 +309,7 @@ public class BookingServiceTest {
 
         bookingService.updateBooking(userId, pastBookingId, true);
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.PAST);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.PAST, null, 10).getContent();
         assertNotNull(bookingDtoList);
         assertEquals(1, bookingDtoList.size());
         assertEquals(pastBookingId, bookingDtoList.getFirst().getId());
@@ -268,7 +344,7 @@ public class BookingServiceTest {
         BookingDto futureBookingDto = bookingService.createBooking(userId2, futureBooking);
         Long futureBookingId = futureBookingDto.getId();
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.WAITING);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.WAITING, null, 10).getContent();
         assertNotNull(bookingDtoList);
         assertEquals(3, bookingDtoList.size());
     }
@@ -304,7 +380,7 @@ public class BookingServiceTest {
 
         bookingService.updateBooking(userId, futureBookingId, false);
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.REJECTED);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByOwnerId(userId, BookingState.REJECTED, null, 10).getContent();
         assertNotNull(bookingDtoList);
         assertEquals(1, bookingDtoList.size());
         assertEquals(futureBookingId, bookingDtoList.getFirst().getId());
@@ -313,14 +389,14 @@ public class BookingServiceTest {
     @Test
     void findBookingsByState() {
         BookingDto bookingDto = bookingService.createBooking(userId, bookingNewDto);
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId, BookingState.ALL);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId, BookingState.ALL, null, 10).getContent();
         assertNotNull(bookingDtoList);
         assertEquals(1, bookingDtoList.size());
         assertEquals(bookingDto.getId(), bookingDtoList.getFirst().getId());
         assertEquals(bookingDto.getStart(), bookingDtoList.getFirst().getStart());
         assertEquals(bookingDto.getEnd(), bookingDtoList.getFirst().getEnd());
-        assertEquals(bookingDto.getItem().getId(), bookingDtoList.getFirst().getItem().getId());
-        assertEquals(bookingDto.getBooker().getId(), bookingDtoList.getFirst().getBooker().getId());
+        assertEquals(bookingDto.getItem().id(), bookingDtoList.getFirst().getItem().id());
+        assertEquals(bookingDto.getBooker().id(), bookingDtoList.getFirst().getBooker().id());
     }
 
     @Test
@@ -331,8 +407,8 @@ public class BookingServiceTest {
         assertEquals(bookingDto.getId(), bookingDtoUpdated.getId());
         assertEquals(bookingDto.getStart(), bookingDtoUpdated.getStart());
         assertEquals(bookingDto.getEnd(), bookingDtoUpdated.getEnd());
-        assertEquals(bookingDto.getItem().getId(), bookingDtoUpdated.getItem().getId());
-        assertEquals(bookingDto.getBooker().getId(), bookingDtoUpdated.getBooker().getId());
+        assertEquals(bookingDto.getItem().id(), bookingDtoUpdated.getItem().id());
+        assertEquals(bookingDto.getBooker().id(), bookingDtoUpdated.getBooker().id());
         assertEquals(BookingStatus.APPROVED, bookingDtoUpdated.getStatus());
     }
 
@@ -390,11 +466,11 @@ public class BookingServiceTest {
 
         BookingDto updatedBooking = bookingService.updateBooking(userId, currentBookingId, true);
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.CURRENT);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.CURRENT, null, 10).getContent();
         assertEquals(1, bookingDtoList.size());
         assertEquals(currentBookingId, bookingDtoList.getFirst().getId());
-        assertEquals(updatedBooking.getItem().getId(), bookingDtoList.getFirst().getItem().getId());
-        assertEquals(updatedBooking.getBooker().getId(), bookingDtoList.getFirst().getBooker().getId());
+        assertEquals(updatedBooking.getItem().id(), bookingDtoList.getFirst().getItem().id());
+        assertEquals(updatedBooking.getBooker().id(), bookingDtoList.getFirst().getBooker().id());
     }
 
     @Test
@@ -428,11 +504,11 @@ public class BookingServiceTest {
 
         BookingDto updatedBooking = bookingService.updateBooking(userId, futureBookingId, true);
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.FUTURE);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.FUTURE, null, 10).getContent();
         assertEquals(1, bookingDtoList.size());
         assertEquals(futureBookingId, bookingDtoList.getFirst().getId());
-        assertEquals(updatedBooking.getItem().getId(), bookingDtoList.getFirst().getItem().getId());
-        assertEquals(updatedBooking.getBooker().getId(), bookingDtoList.getFirst().getBooker().getId());
+        assertEquals(updatedBooking.getItem().id(), bookingDtoList.getFirst().getItem().id());
+        assertEquals(updatedBooking.getBooker().id(), bookingDtoList.getFirst().getBooker().id());
     }
 
     @Test
@@ -466,11 +542,11 @@ public class BookingServiceTest {
 
         BookingDto updatedBooking = bookingService.updateBooking(userId, pastBookingId, true);
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.PAST);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.PAST, null, 10).getContent();
         assertEquals(1, bookingDtoList.size());
         assertEquals(pastBookingId, bookingDtoList.getFirst().getId());
-        assertEquals(updatedBooking.getItem().getId(), bookingDtoList.getFirst().getItem().getId());
-        assertEquals(updatedBooking.getBooker().getId(), bookingDtoList.getFirst().getBooker().getId());
+        assertEquals(updatedBooking.getItem().id(), bookingDtoList.getFirst().getItem().id());
+        assertEquals(updatedBooking.getBooker().id(), bookingDtoList.getFirst().getBooker().id());
     }
 
     @Test
@@ -502,7 +578,7 @@ public class BookingServiceTest {
         BookingDto futureBookingDto = bookingService.createBooking(userId2, futureBooking);
         Long futureBookingId = futureBookingDto.getId();
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.ALL);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.ALL, null, 10).getContent();
         assertEquals(3, bookingDtoList.size());
     }
 
@@ -538,10 +614,10 @@ public class BookingServiceTest {
         bookingService.updateBooking(userId, pastBookingId, true);
         bookingService.updateBooking(userId, currentBookingId, true);
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.WAITING);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.WAITING, null, 10).getContent();
         assertEquals(1, bookingDtoList.size());
         assertEquals(futureBookingId, bookingDtoList.getFirst().getId());
-        assertEquals(futureBooking.getItemId(), bookingDtoList.getFirst().getItem().getId());
+        assertEquals(futureBooking.getItemId(), bookingDtoList.getFirst().getItem().id());
     }
 
     @Test
@@ -575,9 +651,427 @@ public class BookingServiceTest {
 
         BookingDto updatedBooking = bookingService.updateBooking(userId, currentBookingId, false);
 
-        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.REJECTED);
+        List<BookingDto> bookingDtoList = bookingService.findBookingsByState(userId2, BookingState.REJECTED, null, 10).getContent();
         assertEquals(1, bookingDtoList.size());
         assertEquals(currentBookingId, bookingDtoList.getFirst().getId());
-        assertEquals(updatedBooking.getItemId(), bookingDtoList.getFirst().getItem().getId());
+        assertEquals(updatedBooking.getItemId(), bookingDtoList.getFirst().getItem().id());
+    }
+
+    @Test
+    void createBookingWithApprovedIntersection() {
+        BookingDto approvedBooking = bookingService.createBooking(userId, bookingNewDto);
+        bookingService.updateBooking(userId, approvedBooking.getId(), true);
+
+        BookingNewDto intersectingBooking = new BookingNewDto();
+        intersectingBooking.setItemId(itemId);
+        intersectingBooking.setStart(bookingNewDto.getStart().plusMinutes(30));
+        intersectingBooking.setEnd(bookingNewDto.getEnd().plusHours(1));
+        assertThrows(NotFoundException.class, () -> bookingService.createBooking(userId, intersectingBooking));
+
+        BookingNewDto laterBooking = new BookingNewDto();
+        laterBooking.setItemId(itemId);
+        laterBooking.setStart(bookingNewDto.getEnd().plusMinutes(1));
+        laterBooking.setEnd(bookingNewDto.getEnd().plusHours(1));
+        assertNotNull(bookingService.createBooking(userId, laterBooking));
+    }
+
+    @Test
+    void createBookingSeesApprovalsPastServiceAfterReconcile() {
+        Booking approved = new Booking();
+        approved.setItem(item);
+        approved.setBooker(user);
+        approved.setStart(bookingNewDto.getStart());
+        approved.setEnd(bookingNewDto.getEnd());
+        approved.setStatus(BookingStatus.APPROVED);
+        bookingRepository.saveAndFlush(approved);
+
+        bookingAvailabilityIndex.reconcile();
+
+        assertThrows(NotFoundException.class, () -> bookingService.createBooking(userId, bookingNewDto));
+    }
+
+    @Test
+    void reconcileSkipsApprovalsUnchangedSinceLastPassUntilFullReconcile() {
+        Booking approved = saveBooking(bookingNewDto.getStart(), bookingNewDto.getEnd(), BookingStatus.APPROVED);
+        entityManager.createNativeQuery("UPDATE bookings SET updated_at = :updatedAt WHERE id = :id")
+                .setParameter("updatedAt", LocalDateTime.now().minusDays(1))
+                .setParameter("id", approved.getId())
+                .executeUpdate();
+
+        bookingAvailabilityIndex.reconcile();
+        assertFalse(bookingAvailabilityIndex.isOccupied(itemId, approved.getStart(), approved.getEnd()));
+
+        bookingAvailabilityIndex.reconcileAll();
+        assertTrue(bookingAvailabilityIndex.isOccupied(itemId, approved.getStart(), approved.getEnd()));
+    }
+
+    @Test
+    void endedApprovalsLeaveIndex() {
+        LocalDateTime now = LocalDateTime.now();
+        Booking ended = saveBooking(now.minusHours(2), now.minusHours(1), BookingStatus.APPROVED);
+        saveBooking(bookingNewDto.getStart(), bookingNewDto.getEnd(), BookingStatus.APPROVED);
+
+        bookingAvailabilityIndex.reconcileAll();
+        assertFalse(bookingAvailabilityIndex.isOccupied(itemId, ended.getStart(), ended.getEnd()));
+        assertEquals(1.0, meterRegistry.get("shareit.booking.availability.intervals").gauge().value());
+
+        bookingAvailabilityIndex.addApproved(ended);
+        assertTrue(bookingAvailabilityIndex.isOccupied(itemId, ended.getStart(), ended.getEnd()));
+        bookingAvailabilityIndex.reconcile();
+        assertFalse(bookingAvailabilityIndex.isOccupied(itemId, ended.getStart(), ended.getEnd()));
+        assertEquals(1.0, meterRegistry.get("shareit.booking.availability.intervals").gauge().value());
+    }
+
+    private Booking saveBooking(LocalDateTime start, LocalDateTime end, BookingStatus status) {
+        Booking booking = new Booking();
+        booking.setItem(item);
+        booking.setBooker(user);
+        booking.setStart(start);
+        booking.setEnd(end);
+        booking.setStatus(status);
+        return bookingRepository.saveAndFlush(booking);
+    }
+
+    @Test
+    void createBookingWithRejectedIntersection() {
+        BookingDto rejectedBooking = bookingService.createBooking(userId, bookingNewDto);
+        bookingService.updateBooking(userId, rejectedBooking.getId(), false);
+
+        assertNotNull(bookingService.createBooking(userId, bookingNewDto));
+    }
+
+    @Test
+    void findBookingsByStatePagedWithCursor() {
+        for (int i = 1; i <= 5; i++) {
+            BookingNewDto newBooking = new BookingNewDto();
+            newBooking.setItemId(itemId);
+            newBooking.setStart(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).plusDays(i));
+            newBooking.setEnd(newBooking.getStart().plusHours(1));
+            bookingService.createBooking(userId, newBooking);
+        }
+
+        Window<BookingDto> firstPage = bookingService.findBookingsByState(userId, BookingState.ALL, null, 2);
+        assertEquals(2, firstPage.size());
+        assertTrue(firstPage.hasNext());
+        assertTrue(firstPage.getContent().get(0).getStart().isAfter(firstPage.getContent().get(1).getStart()));
+
+        String cursor = BookingService.CURSOR.encode(firstPage.positionAt(firstPage.size() - 1));
+        Window<BookingDto> secondPage = bookingService.findBookingsByState(userId, BookingState.ALL, cursor, 2);
+        assertEquals(2, secondPage.size());
+        assertTrue(firstPage.getContent().get(1).getStart().isAfter(secondPage.getContent().get(0).getStart()));
+
+        cursor = BookingService.CURSOR.encode(secondPage.positionAt(secondPage.size() - 1));
+        Window<BookingDto> lastPage = bookingService.findBookingsByOwnerId(userId, BookingState.ALL, cursor, 2);
+        assertEquals(1, lastPage.size());
+        assertFalse(lastPage.hasNext());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1, KeysetCursor.MAX_PAGE_SIZE + 1, Integer.MAX_VALUE})
+    void findBookingsWithPageSizeOutOfRange(int size) {
+        assertThrows(IllegalArgumentException.class,
+                () -> bookingService.findBookingsByState(userId, BookingState.ALL, null, size));
+        assertThrows(IllegalArgumentException.class,
+                () -> bookingService.findBookingsByOwnerId(userId, BookingState.ALL, null, size));
+    }
+
+    @Test
+    void findBookingsByStateWithInvalidCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> bookingService.findBookingsByState(userId, BookingState.ALL, "not-a-cursor", 10));
+    }
+
+    @Test
+    void findBookingsByStateLoadsPageInSingleQuery() {
+        for (int i = 1; i <= 10; i++) {
+            BookingNewDto newBooking = new BookingNewDto();
+            newBooking.setItemId(itemId);
+            newBooking.setStart(LocalDateTime.now().plusDays(i));
+            newBooking.setEnd(newBooking.getStart().plusHours(1));
+            bookingService.createBooking(userId, newBooking);
+        }
+        userExistenceIndex.requireExists(userId);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<BookingDto> bookings = statementCounter.assertAtMost(1,
+                () -> bookingService.findBookingsByOwnerId(userId, BookingState.ALL, null, 10).getContent());
+
+        assertEquals(10, bookings.size());
+        assertEquals(itemId, bookings.getFirst().getItem().id());
+        assertEquals(user.getName(), bookings.getFirst().getBooker().name());
+    }
+
+    @Test
+    void decideBookingsReportsResultPerBooking() {
+        User user2 = new User();
+        user2.setName("Name2");
+        user2.setEmail("test2@mail.ru");
+        userRepository.save(user2);
+        Long approvedId = bookingService.createBooking(user2.getId(), bookingNewDto).getId();
+        Long overlappingId = bookingService.createBooking(user2.getId(), bookingNewDto).getId();
+        Long rejectedId = createBookingInDays(user2.getId(), 1).getId();
+        Long alreadyApprovedId = createBookingInDays(user2.getId(), 2).getId();
+        bookingService.updateBooking(userId, alreadyApprovedId, true);
+
+        List<BookingDecisionResultDto> results = bookingService.decideBookings(userId, List.of(
+                new BookingDecisionDto(approvedId, true),
+                new BookingDecisionDto(overlappingId, true),
+                new BookingDecisionDto(rejectedId, false),
+                new BookingDecisionDto(alreadyApprovedId, false),
+                new BookingDecisionDto(approvedId, false),
+                new BookingDecisionDto(-1L, true)));
+
+        assertEquals(List.of(BookingDecisionResultDto.decided(approvedId, BookingStatus.APPROVED),
+                BookingDecisionResultDto.failed(overlappingId, "Предмет занят в указанные даты"),
+                BookingDecisionResultDto.decided(rejectedId, BookingStatus.REJECTED),
+                BookingDecisionResultDto.failed(alreadyApprovedId, "Бронирование уже подтверждено"),
+                BookingDecisionResultDto.failed(approvedId, "Решение по бронированию уже есть в этом запросе"),
+                BookingDecisionResultDto.failed(-1L, "Бронирование с таким id не найдено")), results);
+        assertEquals(BookingStatus.APPROVED, bookingRepository.findById(approvedId).orElseThrow().getStatus());
+        assertEquals(BookingStatus.WAITING, bookingRepository.findById(overlappingId).orElseThrow().getStatus());
+        assertEquals(BookingStatus.REJECTED, bookingRepository.findById(rejectedId).orElseThrow().getStatus());
+        assertThrows(NotFoundException.class, () -> bookingService.createBooking(user2.getId(), bookingNewDto));
+    }
+
+    @Test
+    void decideBookingsByWrongOwner() {
+        User user2 = new User();
+        user2.setName("Name2");
+        user2.setEmail("test2@mail.ru");
+        userRepository.save(user2);
+        Long bookingId = bookingService.createBooking(user2.getId(), bookingNewDto).getId();
+
+        List<BookingDecisionResultDto> results = bookingService.decideBookings(user2.getId(),
+                List.of(new BookingDecisionDto(bookingId, true)));
+
+        assertEquals(List.of(BookingDecisionResultDto.failed(bookingId, "Пользователь не является владельцем предмета")),
+                results);
+        assertEquals(BookingStatus.WAITING, bookingRepository.findById(bookingId).orElseThrow().getStatus());
+    }
+
+    @Test
+    void decideBookingsUsesSetBasedStatements() {
+        List<BookingDecisionDto> decisions = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            decisions.add(new BookingDecisionDto(createBookingInDays(userId, i).getId(), i % 2 == 0));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<BookingDecisionResultDto> results = statementCounter.assertAtMost(6,
+                () -> bookingService.decideBookings(userId, decisions));
+
+        assertTrue(results.stream().allMatch(result -> result.error() == null));
+    }
+
+    private BookingDto createBookingInDays(Long bookerId, int days) {
+        BookingNewDto newBooking = new BookingNewDto();
+        newBooking.setItemId(itemId);
+        newBooking.setStart(bookingNewDto.getStart().plusDays(days));
+        newBooking.setEnd(newBooking.getStart().plusHours(1));
+        return bookingService.createBooking(bookerId, newBooking);
+    }
+
+    @Test
+    void decideBookingsIncrementsBookingVersion() {
+        Long bookingId = bookingService.createBooking(userId, bookingNewDto).getId();
+        entityManager.flush();
+
+        bookingService.decideBookings(userId, List.of(new BookingDecisionDto(bookingId, true)));
+
+        Booking booking = bookingRepository.findById(bookingId).orElseThrow();
+        assertEquals(BookingStatus.APPROVED, booking.getStatus());
+        assertEquals(1L, booking.getVersion());
+    }
+
+    @Test
+    void updateBookingWithStaleVersionFails() {
+        Long bookingId = bookingService.createBooking(userId, bookingNewDto).getId();
+        entityManager.flush();
+        entityManager.clear();
+        Booking stale = bookingRepository.findById(bookingId).orElseThrow();
+        entityManager.detach(stale);
+
+        bookingService.updateBooking(userId, bookingId, false);
+        entityManager.flush();
+        entityManager.clear();
+        stale.setStatus(BookingStatus.APPROVED);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> bookingRepository.saveAndFlush(stale));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentApprovalsNeverOverlap() throws Exception {
+        approveConcurrently(4, 50, 8);
+    }
+
+    /**
+     * Нагрузочный вариант: тысячи одновременных подтверждений, запускается профилем benchmark.
+     */
+    @Test
+    @Tag("benchmark")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentApprovalsThroughput() throws Exception {
+        int bookings = 10 * 200;
+        Duration elapsed = approveConcurrently(10, 200, 16);
+        System.out.printf("Подтверждения: %d за %d мс, %.0f в секунду%n", bookings, elapsed.toMillis(),
+                bookings * 1000.0 / Math.max(1, elapsed.toMillis()));
+    }
+
+    /**
+     * Подтверждает случайно пересекающиеся бронирования нескольких вещей из нескольких потоков и проверяет,
+     * что подтверждённые не пересекаются, а повторы при конфликте версий почти не исчерпываются.
+     */
+    private Duration approveConcurrently(int itemsCount, int bookingsPerItem, int threads) throws Exception {
+        Random random = new Random(42);
+        try {
+            List<Item> items = new ArrayList<>(List.of(item));
+            for (int i = 1; i < itemsCount; i++) {
+                Item extraItem = new Item();
+                extraItem.setName("Name" + i);
+                extraItem.setDescription("Description");
+                extraItem.setAvailable(true);
+                extraItem.setOwner(user);
+                items.add(itemRepository.save(extraItem));
+            }
+            List<Booking> bookings = new ArrayList<>();
+            for (Item bookedItem : items) {
+                for (int i = 0; i < bookingsPerItem; i++) {
+                    Booking booking = new Booking();
+                    booking.setItem(bookedItem);
+                    booking.setBooker(user);
+                    booking.setStatus(BookingStatus.WAITING);
+                    booking.setStart(bookingNewDto.getStart().plusHours(random.nextInt(200)));
+                    booking.setEnd(booking.getStart().plusHours(1 + random.nextInt(3)));
+                    bookings.add(booking);
+                }
+            }
+            List<Long> bookingIds = new ArrayList<>(bookingRepository.saveAll(bookings).stream()
+                    .map(Booking::getId)
+                    .toList());
+            Collections.shuffle(bookingIds, random);
+
+            AtomicInteger approved = new AtomicInteger();
+            AtomicInteger occupied = new AtomicInteger();
+            AtomicInteger conflicts = new AtomicInteger();
+            long startedAt = System.nanoTime();
+            try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (Long bookingId : bookingIds) {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            bookingService.updateBooking(userId, bookingId, true);
+                            approved.incrementAndGet();
+                        } catch (NotFoundException e) {
+                            occupied.incrementAndGet();
+                        } catch (OptimisticLockingFailureException e) {
+                            conflicts.incrementAndGet();
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - startedAt);
+
+            Map<Long, List<BookingIntervalDto>> approvedByItem = bookingRepository
+                    .findAllIntervalsByStatus(BookingStatus.APPROVED).stream()
+                    .collect(Collectors.groupingBy(BookingIntervalDto::itemId));
+            for (List<BookingIntervalDto> intervals : approvedByItem.values()) {
+                intervals.sort(Comparator.comparing(BookingIntervalDto::start));
+                for (int i = 1; i < intervals.size(); i++) {
+                    assertTrue(intervals.get(i).start().isAfter(intervals.get(i - 1).end()),
+                            "Пересекаются подтверждённые бронирования " + intervals.get(i - 1).id() +
+                                    " и " + intervals.get(i).id());
+                }
+            }
+            assertEquals(approved.get(), approvedByItem.values().stream().mapToInt(List::size).sum());
+            assertEquals(bookingIds.size(), approved.get() + occupied.get() + conflicts.get());
+            assertTrue(approved.get() >= itemsCount);
+            assertTrue(conflicts.get() < bookingIds.size() / 100, "Повторы исчерпаны: " + conflicts.get());
+            return elapsed;
+        } finally {
+            userService.deleteUser(userId);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, KeysetCursor.MAX_PAGE_SIZE})
+    void findBookingsByOwnerIdWithinStatementBudget(int rows) {
+        seedBookingsOfDistinctItems(rows);
+
+        List<BookingDto> bookings = statementCounter.assertAtMost(1,
+                () -> bookingService.findBookingsByOwnerId(userId, BookingState.ALL, null, rows).getContent());
+
+        assertEquals(rows, bookings.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, KeysetCursor.MAX_PAGE_SIZE})
+    void findBookingsByStateWithinStatementBudget(int rows) {
+        Long bookerId = seedBookingsOfDistinctItems(rows);
+
+        List<BookingDto> bookings = statementCounter.assertAtMost(1,
+                () -> bookingService.findBookingsByState(bookerId, BookingState.ALL, null, rows).getContent());
+
+        assertEquals(rows, bookings.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void exportBookingsByOwnerIdWithinStatementBudget(int rows) {
+        seedBookingsOfDistinctItems(rows);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        statementCounter.assertAtMost(1, () -> {
+            try {
+                bookingService.exportBookingsByOwnerId(userId, output);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertEquals(rows, output.toString(StandardCharsets.UTF_8).lines().count());
+    }
+
+    /**
+     * Каждое бронирование — на свою вещь владельца user от одного бронирующего, чтобы жадные связи
+     * item, owner и booker не сводились к одной сущности.
+     */
+    private Long seedBookingsOfDistinctItems(int rows) {
+        itemRepository.delete(item);
+        User booker = new User();
+        booker.setName("Booker");
+        booker.setEmail("booker@mail.ru");
+        userRepository.save(booker);
+
+        List<Item> items = new ArrayList<>();
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Item ownerItem = new Item();
+            ownerItem.setName("Item " + i);
+            ownerItem.setDescription("Description");
+            ownerItem.setAvailable(true);
+            ownerItem.setOwner(user);
+            items.add(ownerItem);
+
+            Booking booking = new Booking();
+            booking.setItem(ownerItem);
+            booking.setBooker(booker);
+            booking.setStart(bookingNewDto.getStart().plusDays(i));
+            booking.setEnd(booking.getStart().plusHours(1));
+            booking.setStatus(BookingStatus.WAITING);
+            bookings.add(booking);
+        }
+        itemRepository.saveAll(items);
+        bookingRepository.saveAll(bookings);
+        userExistenceIndex.requireExists(userId);
+        userExistenceIndex.requireExists(booker.getId());
+        entityManager.flush();
+        entityManager.clear();
+        return booker.getId();
     }
 }
@@ -0,0 +1,75 @@
+package ru.practicum.shareit.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatabaseConcurrencyLimitFilterTest {
+
+    private final DatabaseConcurrencyLimitFilter filter =
+            new DatabaseConcurrencyLimitFilter(1, Duration.ofMillis(100), new ObjectMapper());
+
+    @Test
+    void requestBeyondLimitRejectedAfterTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdPermit(release);
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        MockFilterChain rejectedChain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/items"), rejected, rejectedChain);
+        assertEquals(503, rejected.getStatus());
+        assertNull(rejectedChain.getRequest());
+
+        release.countDown();
+        holder.join();
+        MockHttpServletResponse passed = new MockHttpServletResponse();
+        MockFilterChain passedChain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/items"), passed, passedChain);
+        assertEquals(200, passed.getStatus());
+        assertNotNull(passedChain.getRequest());
+    }
+
+    @Test
+    void actuatorNotLimited() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdPermit(release);
+
+        MockHttpServletResponse health = new MockHttpServletResponse();
+        MockFilterChain healthChain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), health, healthChain);
+        assertEquals(200, health.getStatus());
+        assertNotNull(healthChain.getRequest());
+
+        release.countDown();
+        holder.join();
+    }
+
+    private Thread holdPermit(CountDownLatch release) throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual().start(() -> {
+            try {
+                filter.doFilter(new MockHttpServletRequest("GET", "/items"), new MockHttpServletResponse(),
+                        (request, response) -> {
+                            entered.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        return holder;
+    }
+}
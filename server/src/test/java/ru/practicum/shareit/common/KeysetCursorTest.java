@@ -0,0 +1,34 @@
+package ru.practicum.shareit.common;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeysetCursorTest {
+    private final KeysetCursor cursor = new KeysetCursor("start");
+
+    @Test
+    void encodedPositionDecodesToSameKeys() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 12, 30, 15);
+
+        KeysetScrollPosition position = (KeysetScrollPosition) cursor.positionOf(start, 42L);
+
+        assertEquals(start, position.getKeys().get("start"));
+        assertEquals(new KeysetCursor.Position(start, 42L), cursor.decode(cursor.encode(position)));
+    }
+
+    @Test
+    void missingCursorStartsFromFirstPosition() {
+        assertEquals(KeysetCursor.FIRST, cursor.decode(null));
+        assertEquals(KeysetCursor.FIRST, cursor.decode(" "));
+    }
+
+    @Test
+    void malformedCursorRejected() {
+        assertThrows(IllegalArgumentException.class, () -> cursor.decode("not-a-cursor"));
+    }
+}
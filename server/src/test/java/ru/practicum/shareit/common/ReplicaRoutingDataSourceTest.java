@@ -0,0 +1,119 @@
+package ru.practicum.shareit.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Основная база и реплика — две независимые базы H2, поэтому по строке, записанной только в реплику,
+ * видно, куда ушло чтение. Таблица replica_status заменяет pg_last_xact_replay_timestamp().
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shareit-routing-primary",
+        "shareit.datasource.replicas[0].url=" + ReplicaRoutingDataSourceTest.REPLICA_URL
+                + ";DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:schema.sql'",
+        "shareit.datasource.lag-query=SELECT lag_millis FROM replica_status",
+        "shareit.datasource.max-lag=1s",
+        "shareit.datasource.lag-check-interval=1h",
+        "shareit.datasource.read-your-writes-window=1m"
+})
+public class ReplicaRoutingDataSourceTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:shareit-routing-replica";
+    private static final String COUNT_REPLICA_ONLY_ROWS = "select count(*) from users where email = 'replica@example.com'";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "shareit", "shareit"));
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        replica.execute("CREATE TABLE IF NOT EXISTS replica_status (lag_millis BIGINT NOT NULL)");
+        replica.update("DELETE FROM replica_status");
+        replica.update("INSERT INTO replica_status (lag_millis) VALUES (0)");
+        replica.update("DELETE FROM users");
+        replica.update("INSERT INTO users (name, email) VALUES ('replica', 'replica@example.com')");
+        replicaRoutingDataSource.checkReplicas();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        jdbcTemplate.update("DELETE FROM users WHERE email LIKE 'writer%'");
+    }
+
+    @Test
+    void readOnlyTransactionReadsReplica() {
+        assertEquals(1, countInTransaction(true));
+        assertEquals(0, countInTransaction(false));
+    }
+
+    @Test
+    void writerReadsPrimaryRightAfterCommit() {
+        actAs(7L);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbcTemplate.update("INSERT INTO users (name, email) VALUES ('writer', 'writer7@example.com')"));
+
+        assertEquals(0, countInTransaction(true));
+
+        actAs(8L);
+        assertEquals(1, countInTransaction(true));
+    }
+
+    @Test
+    void rolledBackWriteDoesNotPinUser() {
+        actAs(9L);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO users (name, email) VALUES ('writer', 'writer9@example.com')");
+            status.setRollbackOnly();
+        });
+
+        assertEquals(1, countInTransaction(true));
+    }
+
+    @Test
+    void laggingReplicaExcludedUntilCaughtUp() {
+        replica.update("UPDATE replica_status SET lag_millis = 5000");
+        replicaRoutingDataSource.checkReplicas();
+        assertEquals(0, countInTransaction(true));
+
+        replica.update("UPDATE replica_status SET lag_millis = 200");
+        replicaRoutingDataSource.checkReplicas();
+        assertEquals(1, countInTransaction(true));
+    }
+
+    private long countInTransaction(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        Long count = transactionTemplate.execute(status ->
+                jdbcTemplate.queryForObject(COUNT_REPLICA_ONLY_ROWS, Long.class));
+        return count == null ? 0 : count;
+    }
+
+    private static void actAs(Long userId) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(ReplicaRoutingDataSource.USER_ID_HEADER, userId);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
@@ -0,0 +1,85 @@
+package ru.practicum.shareit.common;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.BookingState;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.service.UserService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@Transactional
+public class RepositoryInvocationMetricsTest {
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void repositoryStatementsRecordedPerMethod() {
+        Long ownerId = userService.createUser(UserDto.builder().name("owner").email("owner@example.com").build()).getId();
+        long calls = repositoryCalls("hibernate.repository.statements", "BookingRepository", "findPageByOwnerId");
+        double statements = repositoryTotal("hibernate.repository.statements", "BookingRepository", "findPageByOwnerId");
+        long serviceCalls = serviceCalls("findBookingsByOwnerId");
+
+        bookingService.findBookingsByOwnerId(ownerId, BookingState.ALL, null, 10);
+
+        assertEquals(calls + 1, repositoryCalls("hibernate.repository.statements", "BookingRepository", "findPageByOwnerId"));
+        assertEquals(statements + 1, repositoryTotal("hibernate.repository.statements", "BookingRepository", "findPageByOwnerId"));
+        assertEquals(serviceCalls + 1, serviceCalls("findBookingsByOwnerId"));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void secondLevelCacheHitRecordedForRepositoryMethod() {
+        Long userId = userService.createUser(UserDto.builder().name("cached").email("cached@example.com").build()).getId();
+        try {
+            userService.getUser(userId);
+            double hits = repositoryTotal("hibernate.repository.second.level.cache.hits", "UserRepository", "findById");
+            double statements = repositoryTotal("hibernate.repository.statements", "UserRepository", "findById");
+
+            userService.getUser(userId);
+
+            assertEquals(hits + 1, repositoryTotal("hibernate.repository.second.level.cache.hits", "UserRepository", "findById"));
+            assertEquals(statements, repositoryTotal("hibernate.repository.statements", "UserRepository", "findById"));
+        } finally {
+            userService.deleteUser(userId);
+        }
+    }
+
+    private long repositoryCalls(String name, String repository, String method) {
+        DistributionSummary summary = repositorySummary(name, repository, method);
+        return summary == null ? 0 : summary.count();
+    }
+
+    private double repositoryTotal(String name, String repository, String method) {
+        DistributionSummary summary = repositorySummary(name, repository, method);
+        return summary == null ? 0 : summary.totalAmount();
+    }
+
+    private DistributionSummary repositorySummary(String name, String repository, String method) {
+        return meterRegistry.find(name).tag("repository", repository).tag("method", method).summary();
+    }
+
+    /**
+     * Вызовы с исключением пишутся в таймер с тегом exception, поэтому суммируются все таймеры метода.
+     */
+    private long serviceCalls(String method) {
+        return meterRegistry.find("shareit.service").tag("method", method).timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
+}
@@ -0,0 +1,153 @@
+package ru.practicum.shareit.common;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Оборачивает источник данных dataSource в тестовом контексте и считает выполненные SQL-запросы
+ * (execute*, пакет executeBatch — один запрос). Считаются только запросы потока, вызвавшего
+ * {@link #count(Runnable)} или {@link #assertAtMost(long, Supplier)}, фоновые задачи приложения на счёт не влияют.
+ * Компонент лежит в тестовых классах и попадает в каждый @SpringBootTest через сканирование пакета.
+ */
+@Component
+public class StatementCounter implements BeanPostProcessor {
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final ThreadLocal<long[]> statements = new ThreadLocal<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource) {
+            return new CountingDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    /**
+     * Выполняет действие и возвращает число SQL-запросов, выполненных за время действия.
+     */
+    public long count(Runnable action) {
+        long[] counter = new long[1];
+        run(counter, () -> {
+            action.run();
+            return null;
+        });
+        return counter[0];
+    }
+
+    /**
+     * Проверяет, что действие укладывается в бюджет запросов, и возвращает его результат.
+     */
+    public <T> T assertAtMost(long budget, Supplier<T> action) {
+        long[] counter = new long[1];
+        T result = run(counter, action);
+        if (counter[0] > budget) {
+            fail("Ожидалось не больше " + budget + " SQL-запросов, выполнено " + counter[0]);
+        }
+        return result;
+    }
+
+    public void assertAtMost(long budget, Runnable action) {
+        assertAtMost(budget, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private <T> T run(long[] counter, Supplier<T> action) {
+        long[] outer = statements.get();
+        statements.set(counter);
+        try {
+            return action.get();
+        } finally {
+            if (outer == null) {
+                statements.remove();
+            } else {
+                outer[0] += counter[0];
+                statements.set(outer);
+            }
+        }
+    }
+
+    private void increment() {
+        long[] counter = statements.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+    }
+
+    private final class CountingDataSource extends DelegatingDataSource {
+
+        private CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return countingConnection(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return countingConnection(super.getConnection(username, password));
+        }
+    }
+
+    private Connection countingConnection(Connection connection) {
+        return proxy(Connection.class, (method, args) -> {
+            Object result = method.invoke(connection, args);
+            return switch (method.getName()) {
+                case "createStatement" -> countingStatement(Statement.class, (Statement) result);
+                case "prepareStatement" -> countingStatement(PreparedStatement.class, (PreparedStatement) result);
+                case "prepareCall" -> countingStatement(CallableStatement.class, (CallableStatement) result);
+                default -> result;
+            };
+        });
+    }
+
+    private <T extends Statement> T countingStatement(Class<T> type, T statement) {
+        return proxy(type, (method, args) -> {
+            if (EXECUTE_METHODS.contains(method.getName())) {
+                increment();
+            }
+            return method.invoke(statement, args);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Delegate delegate) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            if ("equals".equals(method.getName()) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            try {
+                return delegate.invoke(method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+
+    @FunctionalInterface
+    private interface Delegate {
+        Object invoke(Method method, Object[] args) throws ReflectiveOperationException;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.practicum.shareit.common;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@Transactional
+public class StatementCounterTest {
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void countsStatementsOfAction() {
+        assertEquals(2, statementCounter.count(() -> {
+            userRepository.findRecentIds(Limit.of(1));
+            userRepository.findRecentIds(Limit.of(1));
+        }));
+    }
+
+    @Test
+    void nestedCountAddsToOuter() {
+        long outer = statementCounter.count(() -> {
+            userRepository.findRecentIds(Limit.of(1));
+            assertEquals(1, statementCounter.count(() -> userRepository.findRecentIds(Limit.of(1))));
+        });
+
+        assertEquals(2, outer);
+    }
+
+    @Test
+    void budgetExceeded() {
+        assertThrows(AssertionError.class, () -> statementCounter.assertAtMost(0,
+                () -> userRepository.findRecentIds(Limit.of(1))));
+    }
+}
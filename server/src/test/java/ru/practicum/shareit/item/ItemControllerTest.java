@@ -14,6 +14,7 @@ import ru.practicum.shareit.item.controller.ItemController;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentNewDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
 import ru.practicum.shareit.item.service.ItemServiceImpl;
 
 import java.nio.charset.StandardCharsets;
@@ -78,6 +79,24 @@ public class ItemControllerTest {
                 .andExpect(jsonPath("$.available", is(itemDto.getAvailable())));
     }
 
+    @Test
+    void importItems() throws Exception {
+        when(itemService.importItems(anyLong(), anyList()))
+                .thenReturn(List.of(ItemImportResultDto.created(1L), ItemImportResultDto.failed("Запрос с таким id не найден")));
+
+        mvc.perform(post("/items/import")
+                        .content(objectMapper.writeValueAsString(List.of(itemDto, itemDto)))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-Sharer-User-Id", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].error", is("Запрос с таким id не найден")));
+    }
+
     @Test
     void getItems() throws Exception {
         when(itemService.getAllItems(anyLong())).thenReturn(List.of(itemDto));
@@ -0,0 +1,112 @@
+package ru.practicum.shareit.item;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemSearchIndex;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнивает поиск вещей по подстроке через триграммный индекс и запросом LIKE к базе на миллионе вещей.
+ * Запускается профилем benchmark; нужна куча около 3 ГБ (-DargLine=-Xmx3g).
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ItemSearchBenchmarkTest {
+    private static final int ITEMS = 1_000_000;
+    private static final int BATCH_SIZE = 10_000;
+    private static final int INDEX_ROUNDS = 100;
+    private static final int DATABASE_ROUNDS = 3;
+    private static final String[] NOUNS = {"дрель", "перфоратор", "шуруповёрт", "лобзик", "болгарка",
+        "стремянка", "палатка", "велосипед", "самокат", "газонокосилка"};
+    private static final String[] ADJECTIVES = {"ударная", "аккумуляторная", "сетевая", "складная", "туристическая",
+        "детская", "профессиональная"};
+    private static final List<String> QUERIES = List.of("дрель", "ударная, модель 77", "модель 4242", "велосипед 31337");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ItemSearchIndex itemSearchIndex;
+
+    private User user;
+
+    @AfterEach
+    void tearDown() {
+        if (user != null) {
+            userRepository.delete(user);
+        }
+        itemSearchIndex.reconcileAll();
+    }
+
+    @Test
+    void indexAgainstLike() {
+        user = new User();
+        user.setName("Name");
+        user.setEmail("search-benchmark@mail.ru");
+        userRepository.save(user);
+        insertItems();
+
+        long startedAt = System.nanoTime();
+        itemSearchIndex.reconcileAll();
+        Duration load = Duration.ofNanos(System.nanoTime() - startedAt);
+        System.out.printf("Вещей: %d, загрузка индекса %d мс%n", ITEMS, load.toMillis());
+
+        Limit limit = Limit.of(itemSearchIndex.getMaxResults());
+        for (String query : QUERIES) {
+            List<Long> indexed = List.of();
+            startedAt = System.nanoTime();
+            for (int i = 0; i < INDEX_ROUNDS; i++) {
+                indexed = itemSearchIndex.search(query).orElseThrow().stream().map(ItemDto::getId).toList();
+            }
+            long index = (System.nanoTime() - startedAt) / INDEX_ROUNDS;
+
+            List<Long> found = List.of();
+            startedAt = System.nanoTime();
+            for (int i = 0; i < DATABASE_ROUNDS; i++) {
+                found = itemRepository.findByRequest(query, limit).stream().map(Item::getId).toList();
+            }
+            long database = (System.nanoTime() - startedAt) / DATABASE_ROUNDS;
+
+            assertEquals(found.size(), indexed.size(), query);
+            if (found.size() < limit.max()) {
+                assertEquals(Set.copyOf(found), Set.copyOf(indexed), query);
+            }
+            System.out.printf("Запрос \"%s\": найдено %d, индекс %d мкс, LIKE %d мкс%n", query, indexed.size(),
+                    index / 1000, database / 1000);
+        }
+    }
+
+    /**
+     * Вставляет вещи с названиями вида «дрель 123» и описаниями вида «ударная, модель 123».
+     */
+    private void insertItems() {
+        for (int offset = 0; offset < ITEMS; offset += BATCH_SIZE) {
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = offset; i < Math.min(ITEMS, offset + BATCH_SIZE); i++) {
+                rows.add(new Object[]{NOUNS[i % NOUNS.length] + " " + i,
+                        ADJECTIVES[i % ADJECTIVES.length] + ", модель " + i, true, user.getId()});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO items (name, description, is_available, owner_id) " +
+                    "VALUES (?, ?, ?, ?)", rows);
+        }
+    }
+}
@@ -1,29 +1,47 @@
 package ru.practicum.shareit.item;
 
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.BookingStatus;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.StatementCounter;
 import ru.practicum.shareit.exceptions.NotFoundException;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentNewDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
+import ru.practicum.shareit.item.model.Comment;
+import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.CommentRepository;
 import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemCardCache;
+import ru.practicum.shareit.item.service.ItemChangedEvent;
+import ru.practicum.shareit.item.service.ItemSearchIndex;
 import ru.practicum.shareit.item.service.ItemServiceImpl;
 import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.request.repository.ItemRequestRepository;
+import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserService;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -39,11 +57,21 @@ public class ItemServiceTest {
     @Autowired
     private UserRepository userRepository;
     @Autowired
+    private UserService userService;
+    @Autowired
     private ItemRequestRepository itemRequestRepository;
     @Autowired
     private CommentRepository commentRepository;
     @Autowired
     private BookingRepository bookingRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private ItemCardCache itemCardCache;
+    @Autowired
+    private StatementCounter statementCounter;
+    @Autowired
+    private ItemSearchIndex itemSearchIndex;
 
     private ItemDto itemDto;
     private CommentDto commentDto;
@@ -51,9 +79,13 @@ public class ItemServiceTest {
     private Long itemId;
     private Long itemRequestId;
     private Long bookingId;
+    private LocalDateTime lastBookingStart;
 
     @BeforeEach
     public void setUp() {
+        // убирает из индекса вещи, которые сверка прочитала в откаченных транзакциях других тестов
+        itemSearchIndex.reconcileAll();
+
         User user = new User();
         user.setName("user");
         user.setEmail("9lS0e@example.com");
@@ -85,8 +117,9 @@ public class ItemServiceTest {
         Booking booking = new Booking();
         booking.setItem(itemRepository.findById(itemId).orElseThrow());
         booking.setBooker(user);
-        booking.setStart(LocalDateTime.now().minusDays(2));
-        booking.setEnd(LocalDateTime.now().minusDays(1));
+        lastBookingStart = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusDays(2);
+        booking.setStart(lastBookingStart);
+        booking.setEnd(lastBookingStart.plusDays(1));
         booking.setStatus(BookingStatus.APPROVED);
         bookingRepository.save(booking);
         bookingId = booking.getId();
@@ -107,6 +140,30 @@ public class ItemServiceTest {
         assertEquals(newItem.getAvailable(), createdItem.getAvailable());
     }
 
+    @Test
+    void importItems() {
+        List<ItemDto> imported = List.of(
+                new ItemDto(null, "Перфоратор", "SDS-plus", true, null, null, null, null),
+                new ItemDto(null, "Лобзик", "по дереву", true, -1L, null, null, null),
+                new ItemDto(null, "Шуруповёрт", "два аккумулятора", false, itemRequestId, null, null, null));
+
+        List<ItemImportResultDto> results = itemService.importItems(userId, imported);
+
+        assertEquals(3, results.size());
+        assertNotNull(results.get(0).id());
+        assertNull(results.get(1).id());
+        assertEquals("Запрос с таким id не найден", results.get(1).error());
+        assertEquals(itemRequestId, itemService.getItem(userId, results.get(2).id()).getRequestId());
+        assertEquals(3, itemService.getAllItems(userId).size());
+        assertEquals(List.of(results.get(0).id()),
+                itemService.searchItems("перфо").stream().map(ItemDto::getId).toList());
+    }
+
+    @Test
+    void importItemsWithNonExistingUser() {
+        assertThrows(NotFoundException.class, () -> itemService.importItems(-1L, List.of(itemDto)));
+    }
+
     @Test
     void updateItem() {
         ItemDto updateInputItem = ItemDto.builder()
@@ -131,6 +188,75 @@ public class ItemServiceTest {
         assertEquals(itemDto.getAvailable(), itemDtoById.getAvailable());
     }
 
+    @Test
+    void findItemByIdServedFromCacheUntilInvalidated() {
+        entityManager.flush();
+        entityManager.clear();
+        itemService.getItem(userId, itemId);
+        assertEquals(0, statementCounter.count(() -> itemService.getItem(userId, itemId)));
+
+        itemCardCache.onItemChanged(new ItemChangedEvent(itemId));
+
+        assertTrue(statementCounter.count(() -> itemService.getItem(userId, itemId)) > 0);
+    }
+
+    @Test
+    void itemCardLoadedAcrossInvalidationNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        itemCardCache.get(itemId, () -> {
+            loads.incrementAndGet();
+            ItemDto stale = itemService.getItem(userId, itemId);
+            itemCardCache.onItemChanged(new ItemChangedEvent(itemId));
+            return stale;
+        });
+
+        itemCardCache.get(itemId, () -> {
+            loads.incrementAndGet();
+            return itemDto;
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void renamedAuthorEvictsOnlyCommentedItemCards() {
+        ItemDto otherItem = itemService.createItem(userId,
+                new ItemDto(null, "other", "other", true, null, null, null, null));
+        try {
+            itemService.addComment(userId, itemId, new CommentNewDto("comment"));
+            itemService.getItem(userId, itemId);
+            itemService.getItem(userId, otherItem.getId());
+
+            userService.updateUser(userId, UserDto.builder().name("renamed").build());
+
+            assertEquals(0, statementCounter.count(() -> itemService.getItem(userId, otherItem.getId())));
+            assertEquals("renamed", itemService.getItem(userId, itemId).getComments().getFirst().getAuthorName());
+        } finally {
+            userService.deleteUser(userId);
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void updatedItemNotServedStaleFromSecondLevelCache() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        try {
+            itemRepository.findById(itemId);
+            statistics.clear();
+
+            itemService.updateItem(userId, itemId, new ItemDto(null, "update name", null, null, null, null, null, null));
+
+            assertEquals("update name", itemRepository.findById(itemId).orElseThrow().getName());
+            assertEquals("update name", itemService.getItem(userId, itemId).getName());
+            assertTrue(statistics.getDomainDataRegionStatistics("items").getHitCount() > 0);
+        } finally {
+            userService.deleteUser(userId);
+        }
+        assertTrue(itemRepository.findById(itemId).isEmpty());
+        assertTrue(itemRequestRepository.findById(itemRequestId).isEmpty());
+    }
+
     @Test
     void fingByText() {
         List<ItemDto> items = itemService.searchItems("name");
@@ -139,6 +265,103 @@ public class ItemServiceTest {
         assertEquals(itemDto.getName(), items.getFirst().getName());
     }
 
+    @Test
+    void findByTextRanksNameMatchesFirst() {
+        ItemDto screwdriver = itemService.createItem(userId,
+                new ItemDto(null, "Отвёртка", "подходит к дрели", true, null, null, null, null));
+        ItemDto drill = itemService.createItem(userId,
+                new ItemDto(null, "Дрель", "ударная", true, null, null, null, null));
+
+        List<ItemDto> items = itemService.searchItems("ДРЕЛ");
+
+        assertEquals(List.of(drill.getId(), screwdriver.getId()), items.stream().map(ItemDto::getId).toList());
+    }
+
+    @Test
+    void findByTextSkipsUnavailableItems() {
+        itemService.updateItem(userId, itemId, new ItemDto(null, null, null, false, null, null, null, null));
+
+        assertTrue(itemService.searchItems("description").isEmpty());
+        assertTrue(itemService.searchItems("de").isEmpty());
+    }
+
+    @Test
+    void findByTextSeesChangesPastServiceAfterReconcile() {
+        Item ladder = new Item();
+        ladder.setName("Стремянка");
+        ladder.setDescription("три ступени");
+        ladder.setAvailable(true);
+        ladder.setOwner(userRepository.findById(userId).orElseThrow());
+        itemRepository.saveAndFlush(ladder);
+
+        assertTrue(itemService.searchItems("стремян").isEmpty());
+        itemSearchIndex.reconcile();
+        assertEquals(List.of(ladder.getId()),
+                itemService.searchItems("стремян").stream().map(ItemDto::getId).toList());
+
+        ladder.setAvailable(false);
+        itemRepository.saveAndFlush(ladder);
+        itemSearchIndex.reconcile();
+        assertTrue(itemService.searchItems("стремян").isEmpty());
+    }
+
+    @Test
+    void findByTextSeesOldAndDeletedChangesPastServiceAfterFullReconcile() {
+        Item ladder = saveItemPastService("Стремянка");
+        entityManager.createNativeQuery("UPDATE items SET updated_at = :updatedAt WHERE id = :id")
+                .setParameter("updatedAt", LocalDateTime.now().minusDays(1))
+                .setParameter("id", ladder.getId())
+                .executeUpdate();
+        Item sledgehammer = saveItemPastService("Кувалда");
+
+        itemSearchIndex.reconcile();
+        assertTrue(itemService.searchItems("стремян").isEmpty());
+        assertEquals(List.of(sledgehammer.getId()),
+                itemService.searchItems("кувалд").stream().map(ItemDto::getId).toList());
+
+        entityManager.createNativeQuery("DELETE FROM items WHERE id = :id")
+                .setParameter("id", sledgehammer.getId())
+                .executeUpdate();
+        itemSearchIndex.reconcile();
+        assertEquals(1, itemService.searchItems("кувалд").size());
+
+        itemSearchIndex.reconcileAll();
+        assertEquals(List.of(ladder.getId()),
+                itemService.searchItems("стремян").stream().map(ItemDto::getId).toList());
+        assertTrue(itemService.searchItems("кувалд").isEmpty());
+    }
+
+    @Test
+    void findByTextReturnsAtMostMaxResults() {
+        int maxResults = itemSearchIndex.getMaxResults();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < maxResults + 5; i++) {
+            ids.add(itemService.createItem(userId,
+                    new ItemDto(null, "Молоток " + i, "слесарный", true, null, null, null, null)).getId());
+        }
+
+        assertEquals(ids.subList(0, maxResults),
+                itemService.searchItems("МОЛОТ").stream().map(ItemDto::getId).toList());
+        assertEquals(ids.subList(0, maxResults),
+                itemService.searchItems("мо").stream().map(ItemDto::getId).toList());
+    }
+
+    private Item saveItemPastService(String name) {
+        Item item = new Item();
+        item.setName(name);
+        item.setDescription("в обход сервиса");
+        item.setAvailable(true);
+        item.setOwner(userRepository.findById(userId).orElseThrow());
+        return itemRepository.saveAndFlush(item);
+    }
+
+    @Test
+    void findByShortText() {
+        List<ItemDto> items = itemService.searchItems("am");
+        assertEquals(1, items.size());
+        assertEquals(itemId, items.getFirst().getId());
+    }
+
     @Test
     void findItemsByUserId() {
         List<ItemDto> items = itemService.getAllItems(userId);
@@ -179,4 +402,104 @@ public class ItemServiceTest {
         assertThrows(RuntimeException.class, () -> itemService.addComment(userId, itemId,
                 new CommentNewDto(commentDto.getText())));
     }
+
+    @Test
+    void findItemsByUserIdWithLastAndNextBooking() {
+        User user = userRepository.findById(userId).orElseThrow();
+        LocalDateTime nextBookingStart = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).plusDays(1);
+        saveBooking(itemRepository.findById(itemId).orElseThrow(), user, nextBookingStart,
+                nextBookingStart.plusDays(1), BookingStatus.WAITING);
+        saveBooking(itemRepository.findById(itemId).orElseThrow(), user, nextBookingStart.minusHours(1),
+                nextBookingStart.plusHours(1), BookingStatus.REJECTED);
+
+        List<ItemDto> items = itemService.getAllItems(userId);
+        assertEquals(1, items.size());
+        assertEquals(lastBookingStart, items.getFirst().getLastBooking());
+        assertEquals(nextBookingStart.plusDays(1), items.getFirst().getNextBooking());
+    }
+
+    @Test
+    void findItemsByUserIdUsesConstantNumberOfStatements() {
+        entityManager.flush();
+        entityManager.clear();
+        long singleItemStatements = statementCounter.count(() -> itemService.getAllItems(userId));
+
+        User user = userRepository.findById(userId).orElseThrow();
+        for (int i = 0; i < 20; i++) {
+            Item item = new Item();
+            item.setName("name " + i);
+            item.setDescription("description " + i);
+            item.setAvailable(true);
+            item.setOwner(user);
+            itemRepository.save(item);
+            saveBooking(item, user, LocalDateTime.now().plusDays(i + 1), LocalDateTime.now().plusDays(i + 2),
+                    BookingStatus.APPROVED);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        long manyItemsStatements = statementCounter.count(
+                () -> assertEquals(21, itemService.getAllItems(userId).size()));
+        assertEquals(singleItemStatements, manyItemsStatements);
+    }
+
+    private void saveBooking(Item item, User booker, LocalDateTime start, LocalDateTime end, BookingStatus status) {
+        Booking booking = new Booking();
+        booking.setItem(item);
+        booking.setBooker(booker);
+        booking.setStart(start);
+        booking.setEnd(end);
+        booking.setStatus(status);
+        bookingRepository.save(booking);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void getAllItemsWithinStatementBudget(int rows) {
+        User owner = userRepository.findById(userId).orElseThrow();
+
+        List<User> bookers = new ArrayList<>();
+        List<Item> items = new ArrayList<>();
+        List<Booking> bookings = new ArrayList<>();
+        List<Comment> comments = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            User booker = new User();
+            booker.setName("booker " + i);
+            booker.setEmail("booker" + i + "@example.com");
+            bookers.add(booker);
+
+            Item item = new Item();
+            item.setName("item " + i);
+            item.setDescription("description");
+            item.setAvailable(true);
+            item.setOwner(owner);
+            items.add(item);
+
+            Booking booking = new Booking();
+            booking.setItem(item);
+            booking.setBooker(booker);
+            booking.setStart(lastBookingStart.minusDays(1));
+            booking.setEnd(lastBookingStart);
+            booking.setStatus(BookingStatus.APPROVED);
+            bookings.add(booking);
+
+            Comment comment = new Comment();
+            comment.setItem(item);
+            comment.setAuthor(booker);
+            comment.setText("comment " + i);
+            comment.setCreated(LocalDateTime.now());
+            comments.add(comment);
+        }
+        userRepository.saveAll(bookers);
+        itemRepository.saveAll(items);
+        bookingRepository.saveAll(bookings);
+        commentRepository.saveAll(comments);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ItemDto> ownerItems = statementCounter.assertAtMost(4, () -> itemService.getAllItems(userId));
+
+        assertEquals(rows + 1, ownerItems.size());
+        assertTrue(ownerItems.stream().allMatch(item -> item.getLastBooking() != null));
+    }
 }
@@ -8,6 +8,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Window;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.practicum.shareit.request.controller.ItemRequestController;
@@ -15,12 +16,16 @@ import ru.practicum.shareit.request.dto.ItemRequestDto;
 import ru.practicum.shareit.request.service.ItemRequestService;
 
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -69,18 +74,26 @@ public class ItemRequestControllerTest {
 
     @Test
     void getAllRequests() throws Exception {
-        when(itemRequestService.getAllRequests(anyLong())).thenReturn(List.of(itemRequestDto));
+        itemRequestDto.setCreated(LocalDateTime.of(2024, 1, 1, 12, 0));
+        when(itemRequestService.getAllRequests(anyLong(), any(), anyInt()))
+                .thenReturn(Window.from(List.of(itemRequestDto), index -> ItemRequestService.CURSOR.positionOf(
+                        itemRequestDto.getCreated(), itemRequestDto.getId()), true));
 
         mvc.perform(get("/requests/all")
+                        .param("size", "1")
                         .characterEncoding(StandardCharsets.UTF_8)
                         .contentType(MediaType.APPLICATION_JSON)
                         .accept(MediaType.APPLICATION_JSON)
                         .header("X-Sharer-User-Id", userId))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("X-Next-Cursor", ItemRequestService.CURSOR.encode(
+                        ItemRequestService.CURSOR.positionOf(itemRequestDto.getCreated(), itemRequestDto.getId()))))
                 .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("$.[0].id", is(itemRequestDto.getId().intValue())))
                 .andExpect(jsonPath("$.[0].description", is(itemRequestDto.getDescription())));
+
+        verify(itemRequestService).getAllRequests(eq(userId), eq(null), eq(1));
     }
 
     @Test
@@ -1,19 +1,31 @@
 package ru.practicum.shareit.request;
 
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Window;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.common.KeysetCursor;
+import ru.practicum.shareit.common.StatementCounter;
 import ru.practicum.shareit.exceptions.NotFoundException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.request.repository.ItemRequestRepository;
 import ru.practicum.shareit.request.service.ItemRequestService;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,6 +44,15 @@ public class ItemRequestServiceTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
     private ItemRequestDto itemRequestDto;
     private Long userId = 1L;
     private Long requestId = 1L;
@@ -83,12 +104,134 @@ public class ItemRequestServiceTest {
         assertThrows(NotFoundException.class, () -> itemRequestService.getRequestById(userId, 99L));
     }
 
+    @Test
+    void getAllRequestsWithNonExistingUser() {
+        assertThrows(NotFoundException.class, () -> itemRequestService.getAllRequests(-1L, null, 10));
+    }
+
     @Test
     void getAllRequests() {
-        List<ItemRequestDto> itemRequests = itemRequestService.getAllRequests(userId);
-        assertNotNull(itemRequests);
+        User otherUser = new User();
+        otherUser.setName("other");
+        otherUser.setEmail("other@example.com");
+        userRepository.save(otherUser);
+
+        Item item = new Item();
+        item.setName("Item");
+        item.setDescription("Answer");
+        item.setAvailable(true);
+        item.setOwner(otherUser);
+        item.setRequest(itemRequestRepository.getReferenceById(requestId));
+        itemRepository.save(item);
+
+        List<ItemRequestDto> itemRequests = itemRequestService.getAllRequests(otherUser.getId(), null, 10).getContent();
         assertEquals(1, itemRequests.size());
         assertEquals(requestId, itemRequests.getFirst().getId());
         assertEquals(itemRequestDto.getDescription(), itemRequests.getFirst().getDescription());
+        assertEquals(1, itemRequests.getFirst().getItems().size());
+        assertEquals(item.getName(), itemRequests.getFirst().getItems().getFirst().getName());
+
+        assertTrue(itemRequestService.getAllRequests(userId, null, 10).isEmpty());
+    }
+
+    @Test
+    void getAllRequestsPagedWithCursor() {
+        for (int i = 1; i <= 4; i++) {
+            ItemRequestDto newItemRequest = new ItemRequestDto();
+            newItemRequest.setDescription("Request " + i);
+            itemRequestService.addItemRequest(userId, newItemRequest);
+        }
+        User otherUser = new User();
+        otherUser.setName("other");
+        otherUser.setEmail("other@example.com");
+        userRepository.save(otherUser);
+
+        Window<ItemRequestDto> firstPage = itemRequestService.getAllRequests(otherUser.getId(), null, 3);
+        assertEquals(3, firstPage.size());
+        assertTrue(firstPage.hasNext());
+        assertEquals("Request 4", firstPage.getContent().getFirst().getDescription());
+
+        String cursor = ItemRequestService.CURSOR.encode(firstPage.positionAt(firstPage.size() - 1));
+        Window<ItemRequestDto> lastPage = itemRequestService.getAllRequests(otherUser.getId(), cursor, 3);
+        assertEquals(2, lastPage.size());
+        assertFalse(lastPage.hasNext());
+        assertEquals(requestId, lastPage.getContent().getLast().getId());
+    }
+
+    @Test
+    void getAllRequestsWithInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> itemRequestService.getAllRequests(userId, "not-a-cursor", 10));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1, KeysetCursor.MAX_PAGE_SIZE + 1, Integer.MAX_VALUE})
+    void getAllRequestsWithPageSizeOutOfRange(int size) {
+        assertThrows(IllegalArgumentException.class, () -> itemRequestService.getAllRequests(userId, null, size));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void getAllUserRequestsWithinStatementBudget(int rows) {
+        seedAnsweredRequests(rows);
+
+        List<ItemRequestDto> requests = statementCounter.assertAtMost(2,
+                () -> itemRequestService.getAllUserRequests(userId));
+
+        assertEquals(rows + 1, requests.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, KeysetCursor.MAX_PAGE_SIZE - 1})
+    void getAllRequestsWithinStatementBudget(int rows) {
+        Long viewerId = seedAnsweredRequests(rows);
+
+        List<ItemRequestDto> requests = statementCounter.assertAtMost(3,
+                () -> itemRequestService.getAllRequests(viewerId, null, rows + 1).getContent());
+
+        assertEquals(rows + 1, requests.size());
+        assertEquals(rows, requests.stream().filter(request -> request.getItems().size() == 1).count());
+    }
+
+    /**
+     * Создаёт запросы пользователя user, на каждый из которых отвечает вещью свой пользователь,
+     * и возвращает id ещё одного пользователя, который смотрит ленту чужих запросов.
+     */
+    private Long seedAnsweredRequests(int rows) {
+        User requester = userRepository.findById(userId).orElseThrow();
+        User viewer = new User();
+        viewer.setName("viewer");
+        viewer.setEmail("viewer@example.com");
+        userRepository.save(viewer);
+
+        LocalDateTime created = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<User> responders = new ArrayList<>();
+        List<ItemRequest> requests = new ArrayList<>();
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            User responder = new User();
+            responder.setName("responder " + i);
+            responder.setEmail("responder" + i + "@example.com");
+            responders.add(responder);
+
+            ItemRequest request = new ItemRequest();
+            request.setDescription("Request " + i);
+            request.setRequester(requester);
+            request.setCreated(created.minusSeconds(i + 1));
+            requests.add(request);
+
+            Item item = new Item();
+            item.setName("Item " + i);
+            item.setDescription("Answer");
+            item.setAvailable(true);
+            item.setOwner(responder);
+            item.setRequest(request);
+            items.add(item);
+        }
+        userRepository.saveAll(responders);
+        itemRequestRepository.saveAll(requests);
+        itemRepository.saveAll(items);
+        entityManager.flush();
+        entityManager.clear();
+        return viewer.getId();
     }
 }
@@ -1,18 +1,41 @@
 package ru.practicum.shareit.user;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.StatementCounter;
 import ru.practicum.shareit.exceptions.NotFoundException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserExistenceIndex;
 import ru.practicum.shareit.user.service.UserService;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(SpringExtension.class)
@@ -26,6 +49,24 @@ public class UserServiceTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private UserExistenceIndex userExistenceIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
     private UserDto userDto;
     private Long userId;
 
@@ -52,6 +93,27 @@ public class UserServiceTest {
         assertEquals(newUser.getEmail(), createdUser.getEmail());
     }
 
+    @Test
+    void createUsersInBatches() {
+        List<User> users = IntStream.range(0, 120)
+                .mapToObj(i -> {
+                    User user = new User();
+                    user.setName("user" + i);
+                    user.setEmail("user" + i + "@example.com");
+                    return user;
+                })
+                .toList();
+        entityManager.flush();
+        long before = userRepository.count();
+
+        statementCounter.assertAtMost(6, () -> {
+            userRepository.saveAll(users);
+            entityManager.flush();
+        });
+
+        assertEquals(before + 120, userRepository.count());
+    }
+
     @Test
     void getUser() {
         UserDto user = userService.getUser(userId);
@@ -75,6 +137,77 @@ public class UserServiceTest {
         assertEquals(updateForUser.getEmail(), updatedUser.getEmail());
     }
 
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void updatedUserNotServedStaleFromSecondLevelCache() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        try {
+            userService.getUser(userId);
+            statistics.clear();
+
+            userService.updateUser(userId, UserDto.builder().name("up name").email("update@example.com").build());
+            UserDto user = userService.getUser(userId);
+
+            assertEquals("up name", user.getName());
+            assertEquals("update@example.com", user.getEmail());
+            assertTrue(statistics.getDomainDataRegionStatistics("users").getHitCount() > 0);
+        } finally {
+            userService.deleteUser(userId);
+        }
+    }
+
+    @Test
+    void createdUserExistsWithoutQuery() {
+        entityManager.flush();
+
+        statementCounter.assertAtMost(0, () -> userExistenceIndex.requireExists(userId));
+    }
+
+    @Test
+    void missingUserCheckedInDatabase() {
+        double missing = meterRegistry.get("users.existence.fallback").tag("result", "missing").counter().count();
+
+        assertThrows(NotFoundException.class, () -> userExistenceIndex.requireExists(-1L));
+        assertEquals(missing + 1, meterRegistry.get("users.existence.fallback").tag("result", "missing").counter().count());
+    }
+
+    @Test
+    void deletedUserNoLongerExists() {
+        userService.deleteUser(userId);
+        assertThrows(NotFoundException.class, () -> userExistenceIndex.requireExists(userId));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void existenceIndexRefreshesKnownIdsInBackground() throws InterruptedException {
+        Long deletedId = userService.createUser(UserDto.builder().name("deleted").email("deleted@example.com")
+                .build()).getId();
+        UserExistenceIndex refreshing = new UserExistenceIndex(userRepository, new SimpleMeterRegistry(), 10,
+                Duration.ofMillis(50));
+        try {
+            refreshing.add(userId);
+            refreshing.add(deletedId);
+            userRepository.deleteById(deletedId);
+            Thread.sleep(100);
+
+            statementCounter.assertAtMost(0, () -> refreshing.requireExists(userId));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            boolean dropped = false;
+            while (!dropped && System.nanoTime() < deadline) {
+                try {
+                    refreshing.requireExists(deletedId);
+                    Thread.sleep(10);
+                } catch (NotFoundException e) {
+                    dropped = true;
+                }
+            }
+            assertTrue(dropped, "Удалённый в обход сервиса пользователь не убран фоновой проверкой");
+            statementCounter.assertAtMost(0, () -> refreshing.requireExists(userId));
+        } finally {
+            userService.deleteUser(userId);
+        }
+    }
+
     @Test
     void deleteUser() {
         userService.deleteUser(userId);
@@ -90,4 +223,44 @@ public class UserServiceTest {
 
         assertThrows(DataIntegrityViolationException.class, () -> userService.createUser(duplicateUser));
     }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void deleteUserWithinStatementBudget(int rows) {
+        User owner = userRepository.findById(userId).orElseThrow();
+        User booker = new User();
+        booker.setName("booker");
+        booker.setEmail("booker@example.com");
+        userRepository.save(booker);
+
+        List<Item> items = new ArrayList<>();
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Item item = new Item();
+            item.setName("item " + i);
+            item.setDescription("description");
+            item.setAvailable(true);
+            item.setOwner(owner);
+            items.add(item);
+
+            Booking booking = new Booking();
+            booking.setItem(item);
+            booking.setBooker(booker);
+            booking.setStart(LocalDateTime.now().plusDays(i + 1));
+            booking.setEnd(booking.getStart().plusHours(1));
+            booking.setStatus(BookingStatus.APPROVED);
+            bookings.add(booking);
+        }
+        itemRepository.saveAll(items);
+        bookingRepository.saveAll(bookings);
+        entityManager.flush();
+        entityManager.clear();
+
+        statementCounter.assertAtMost(5, () -> {
+            userService.deleteUser(userId);
+            entityManager.flush();
+        });
+
+        assertEquals(0, itemRepository.findByOwnerId(userId).size());
+    }
 }